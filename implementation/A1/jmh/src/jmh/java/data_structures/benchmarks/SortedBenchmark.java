@@ -0,0 +1,147 @@
+package data_structures.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import data_structures.Sorted;
+import data_structures.SortedFactory;
+import data_structures.locks.LockKind;
+
+/**
+ * Add-heavy, remove-heavy and mixed workloads on a {@link Sorted} data
+ * structure. Each scenario is a JMH group of 4 threads sharing one data
+ * structure, so the score is the throughput of the adders and the removers
+ * together, with the score of each side reported separately.
+ *
+ * The data structure is rebuilt before every iteration and filled with
+ * <code>size</code> items; the keys come from the same generators as
+ * {@link data_structures.Main} and {@link data_structures.Main2}, and every
+ * operation picks one of <code>2 * size</code> keys at random. Remove-heavy
+ * runs shrink the data structure during an iteration. In add-heavy runs, every
+ * adding thread removes the oldest of its own keys once it has added
+ * <code>size / 3</code> of them, so the data structure stays below about twice
+ * <code>size</code> however long an iteration takes.
+ *
+ * @param <T>
+ *            the type of the keys
+ */
+@State(Scope.Group)
+public abstract class SortedBenchmark<T extends Comparable<T>> {
+
+    @Param({ "cgl", "cgt", "fgl", "fgt", "ll", "lt", "lfl", "lfsl", "lft",
+            "avl", "ul", "fccgl", "fccgt" })
+    public String dataStructure;
+
+    @Param({ "reentrant" })
+    public String lock;
+
+    @Param({ "1024" })
+    public int size;
+
+    private T[] keys;
+    private Sorted<T> sorted;
+
+    /** The keys an adding thread added in the current iteration, oldest first. */
+    @State(Scope.Thread)
+    public static class Added {
+        final ArrayDeque<Object> keys = new ArrayDeque<Object>();
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            keys.clear();
+        }
+    }
+
+    /**
+     * Creates the keys, in the same way as the corresponding main program.
+     *
+     * @param n
+     *            the number of keys
+     * @param seed
+     *            the seed
+     * @return the keys
+     */
+    protected abstract T[] createKeys(int n, long seed);
+
+    @Setup(Level.Trial)
+    public void generateKeys() {
+        keys = createKeys(2 * size, size);
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        LockKind lockKind = LockKind.fromName(lock);
+        if (lockKind == null) {
+            throw new IllegalArgumentException("unknown lock kind " + lock);
+        }
+        sorted = SortedFactory.create(dataStructure, lockKind);
+        if (sorted == null) {
+            throw new IllegalArgumentException(
+                    "unknown data structure " + dataStructure);
+        }
+        for (int i = 0; i < size; i++) {
+            sorted.add(keys[i]);
+        }
+    }
+
+    private T randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    @Benchmark
+    @Group("addHeavy")
+    @GroupThreads(3)
+    @SuppressWarnings("unchecked")
+    public void addHeavyAdd(Added added) {
+        if (added.keys.size() >= size / 3) {
+            sorted.remove((T) added.keys.poll());
+        }
+        T t = randomKey();
+        sorted.add(t);
+        added.keys.add(t);
+    }
+
+    @Benchmark
+    @Group("addHeavy")
+    @GroupThreads(1)
+    public void addHeavyRemove() {
+        sorted.remove(randomKey());
+    }
+
+    @Benchmark
+    @Group("removeHeavy")
+    @GroupThreads(1)
+    public void removeHeavyAdd() {
+        sorted.add(randomKey());
+    }
+
+    @Benchmark
+    @Group("removeHeavy")
+    @GroupThreads(3)
+    public void removeHeavyRemove() {
+        sorted.remove(randomKey());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedAdd() {
+        sorted.add(randomKey());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedRemove() {
+        sorted.remove(randomKey());
+    }
+}
@@ -0,0 +1,21 @@
+package data_structures.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import data_structures.Main;
+
+/**
+ * {@link SortedBenchmark} with the <code>Integer</code> keys of
+ * {@link Main}.
+ */
+@State(Scope.Group)
+public class SortedIntegerBenchmark extends SortedBenchmark<Integer> {
+
+    @Override
+    protected Integer[] createKeys(int n, long seed) {
+        Integer[] keys = new Integer[n];
+        Main.createWorkData(keys, new Integer[n], seed);
+        return keys;
+    }
+}
@@ -0,0 +1,21 @@
+package data_structures.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import data_structures.Main2;
+
+/**
+ * {@link SortedBenchmark} with the <code>String</code> keys of
+ * {@link Main2}.
+ */
+@State(Scope.Group)
+public class SortedStringBenchmark extends SortedBenchmark<String> {
+
+    @Override
+    protected String[] createKeys(int n, long seed) {
+        String[] keys = new String[n];
+        Main2.createWorkData(keys, new String[n], seed);
+        return keys;
+    }
+}
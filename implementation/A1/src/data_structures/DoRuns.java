@@ -2,21 +2,20 @@ package data_structures;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Locale;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import data_structures.implementation.CoarseGrainedList;
-import data_structures.implementation.CoarseGrainedTree;
-import data_structures.implementation.FineGrainedList;
-import data_structures.implementation.FineGrainedTree;
-/*
-import data_structures.implementation.LazyList;
-import data_structures.implementation.LazyTree;
-*/
+import data_structures.implementation.EliminationSorted;
+import data_structures.implementation.LockStats;
+import data_structures.implementation.ShardedSorted;
+import data_structures.locks.LockKind;
 
 /**
  * Adds and then removes items from a {@link Sorted} data structure, by
  * splitting the items to add and items to remove into chunks, to be added and
- * removed multi-threaded.
+ * removed multi-threaded. Alternatively, runs a {@link Workload} of mixed
+ * operations on it.
  *
  * @param <T>
  *            item type to be used.
@@ -37,8 +36,32 @@ public class DoRuns<T extends Comparable<T>> {
     /** When set, the data structure is printed after adding the items. */
     private final boolean debug;
 
+    /** The mixed operations to run, or null to add and remove the items. */
+    private final Workload workload;
+    /** The kind of data structure, a new one is made for every workload run. */
+    private final String dataStructure;
+    /** The kind of locks of the data structure. */
+    private final LockKind lockKind;
+
     /** The actual data structure. */
-    private final Sorted<T> sorted;
+    private Sorted<T> sorted;
+
+    /** Whether to record the latency of every operation. */
+    private boolean recordLatency = false;
+    /** Items per addAll/removeAll call, or 1 to add and remove one by one. */
+    private int batchSize = 1;
+    /** Number of key ranges, each with its own data structure. */
+    private int nrShards = 1;
+    /** Whether concurrent adds and removes of equal items cancel out. */
+    private boolean elimination = false;
+    /**
+     * Latencies of all adds and removes. The first run is left out unless it
+     * had a warmup period, since it includes JIT compilation.
+     */
+    private final LatencyHistogram addLatency = new LatencyHistogram();
+    private final LatencyHistogram removeLatency = new LatencyHistogram();
+    /** Lock statistics of all runs, only counted if enabled. */
+    private final LockStats.Counters lockStats = new LockStats.Counters();
 
     /**
      * Initializes this object, and instantiates the actual data structure to be
@@ -57,42 +80,144 @@ public class DoRuns<T extends Comparable<T>> {
      *            add or remove operations.
      * @param debug
      *            when set, the data structure is printed after adding the items
+     * @param ascending
+     *            when set, the items are added in ascending order, so that
+     *            every thread adds a sorted range; this is the worst case for
+     *            trees that do not rebalance
+     * @param lockKind
+     *            the kind of locks used by the coarse- and fine-grained data
+     *            structures
      */
     public DoRuns(String dataStructure, int nrThreads, T[] itemsToAdd,
-            T[] itemsToRemove, int workTime, boolean debug) {
+            T[] itemsToRemove, int workTime, boolean debug, boolean ascending,
+            LockKind lockKind) {
         this.nrThreads = nrThreads;
+        if (ascending) {
+            itemsToAdd = Arrays.copyOf(itemsToAdd, itemsToAdd.length);
+            Arrays.sort(itemsToAdd);
+        }
         this.itemsToAdd = itemsToAdd;
         this.itemsToRemove = itemsToRemove;
         this.workTime = workTime;
         this.debug = debug;
+        this.workload = null;
+        this.dataStructure = dataStructure;
+        this.lockKind = lockKind;
 
         // Determine and allocate the data structure to be used.
 
-        if (dataStructure.equalsIgnoreCase(Main.CGL)) {
-            sorted = new CoarseGrainedList<T>();
-        } else if (dataStructure.equalsIgnoreCase(Main.CGT)) {
-            sorted = new CoarseGrainedTree<T>();
-        } else if (dataStructure.equalsIgnoreCase(Main.FGL)) {
-            sorted = new FineGrainedList<T>();
-        } else if (dataStructure.equalsIgnoreCase(Main.FGT)) {
-            sorted = new FineGrainedTree<T>();
-/*
-        } else if (dataStructure.equalsIgnoreCase(Main.LL)) {
-            sorted = new LazyList<T>();
-        } else if (dataStructure.equalsIgnoreCase(Main.LT)) {
-            sorted = new LazyTree<T>();
-*/
-        } else {
-            sorted = null;
+        sorted = SortedFactory.create(dataStructure, lockKind);
+        if (sorted == null) {
             Main.exitWithError();
         }
     }
 
+    /**
+     * Initializes this object to run a workload of mixed operations.
+     *
+     * @param dataStructure
+     *            specifies which kind of data structure to use
+     * @param nrThreads
+     *            specifies the number of threads to use
+     * @param keys
+     *            the keys the operations choose from, in random order
+     * @param workload
+     *            the mix of operations and the key distribution
+     * @param workTime
+     *            if {@literal >} 0, the threads spend some CPU time in between
+     *            operations.
+     * @param lockKind
+     *            the kind of locks used by the coarse- and fine-grained data
+     *            structures
+     */
+    public DoRuns(String dataStructure, int nrThreads, T[] keys,
+            Workload workload, int workTime, LockKind lockKind) {
+        this.nrThreads = nrThreads;
+        this.itemsToAdd = keys;
+        this.itemsToRemove = null;
+        this.workTime = workTime;
+        this.debug = false;
+        this.workload = workload;
+        this.dataStructure = dataStructure;
+        this.lockKind = lockKind;
+
+        sorted = SortedFactory.create(dataStructure, lockKind);
+        if (sorted == null) {
+            Main.exitWithError();
+        }
+    }
+
+    /**
+     * Makes the worker threads record the latency of every add and remove,
+     * to be reported as percentiles after the runs.
+     *
+     * @param recordLatency
+     *            whether to record latencies
+     */
+    public void setRecordLatency(boolean recordLatency) {
+        this.recordLatency = recordLatency;
+    }
+
+    /**
+     * Makes the worker threads add and remove their items with addAll and
+     * removeAll instead of one by one. Not used by workloads.
+     *
+     * @param batchSize
+     *            the number of items per call, 1 for single adds and removes
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Makes the data structure a {@link ShardedSorted} of data structures of
+     * the chosen kind, with boundaries sampled from the items or keys.
+     *
+     * @param nrShards
+     *            the number of key ranges, 1 for no sharding
+     */
+    public void setShards(int nrShards) {
+        this.nrShards = nrShards;
+        sorted = createSorted();
+    }
+
+    /**
+     * Puts an {@link EliminationSorted} in front of the data structure, so
+     * that concurrent adds and removes of equal items cancel out.
+     *
+     * @param elimination
+     *            whether to use elimination
+     */
+    public void setElimination(boolean elimination) {
+        this.elimination = elimination;
+        sorted = createSorted();
+    }
+
+    /**
+     * Creates a new, empty data structure of the chosen kind, sharded and with
+     * elimination if requested.
+     *
+     * @return the data structure
+     */
+    private Sorted<T> createSorted() {
+        Sorted<T> result = nrShards <= 1
+                ? SortedFactory.create(dataStructure, lockKind)
+                : new ShardedSorted<T>(
+                        ShardedSorted.sampleBoundaries(itemsToAdd, nrShards),
+                        () -> SortedFactory.<T> create(dataStructure, lockKind));
+        return elimination ? new EliminationSorted<T>(result, nrThreads)
+                : result;
+    }
+
     /**
      * Runs the test, by first creating the worker threads, then starting them,
      * and then waiting for them to finish.
      */
     public void runDataStructure() {
+        if (workload != null) {
+            runWorkload();
+            return;
+        }
         int runCount = 0;
         long totalTime = 0;
         for (int run = 0; run < 10; run++) {
@@ -104,11 +229,14 @@ public class DoRuns<T extends Comparable<T>> {
                 T[] toAdd = Arrays.copyOfRange(itemsToAdd, i * sz, (i + 1) * sz);
                 T[] toRemove = Arrays.copyOfRange(itemsToRemove, i * sz,
                         (i + 1) * sz);
-                workerThreads.add(new WorkerThread<T>(i, sorted, toAdd, toRemove,
-                        workTime, barrier, debug));
+                WorkerThread<T> worker = new WorkerThread<T>(i, sorted, toAdd,
+                        toRemove, workTime, barrier, debug);
+                worker.setBatchSize(batchSize);
+                workerThreads.add(withLatencies(worker));
             }
 
             // Start worker threads
+            LockStats.reset();
             long start = System.currentTimeMillis();
 
             for (WorkerThread<T> t : workerThreads) {
@@ -126,6 +254,7 @@ public class DoRuns<T extends Comparable<T>> {
                 }
             }
             long end = System.currentTimeMillis();
+            lockStats.add(LockStats.collect());
 
             // Report result.
             ArrayList<T> result = sorted.toArrayList();
@@ -136,10 +265,210 @@ public class DoRuns<T extends Comparable<T>> {
                 System.out.printf("time: %d ms\n", end - start);
                 totalTime += end - start;
                 runCount++;
+                if (run > 0) {
+                    mergeLatencies(workerThreads);
+                }
             }
         }
         if (runCount > 0) {
-            System.out.printf("Average time: %f ms\n", (float) totalTime / runCount);
+            /* Locale.ROOT, so that Sweep can parse it */
+            System.out.printf(Locale.ROOT, "Average time: %f ms\n",
+                    (float) totalTime / runCount);
+        }
+        printLatencies();
+        printLockStats();
+    }
+
+    /**
+     * Runs the workload: fills a new data structure with the first keys, then
+     * lets every thread perform its operations, and checks that the result is
+     * still sorted. With a duration, the threads run for a warmup period and
+     * then for the duration, and the operations done in the latter are
+     * reported as throughput.
+     */
+    private void runWorkload() {
+        T[] keys = itemsToAdd;
+        KeyDistribution distribution = KeyDistribution
+                .create(workload.distribution, keys.length);
+        int prefill = workload.prefill >= 0 ? workload.prefill
+                : keys.length / 2;
+        int nrOps = workload.opsPerThread > 0 ? workload.opsPerThread
+                : keys.length / nrThreads;
+        boolean timed = workload.durationMs > 0;
+        if (timed) {
+            System.out.printf(
+                    "workload: %s, %d keys, prefill %d, warmup %d ms, duration %d ms\n",
+                    workload, keys.length, prefill, workload.warmupMs,
+                    workload.durationMs);
+        } else {
+            System.out.printf(
+                    "workload: %s, %d keys, prefill %d, %d ops/thread\n",
+                    workload, keys.length, prefill, nrOps);
+        }
+
+        /* sorted once, the trees build a balanced tree from it */
+        T[] prefillItems = Arrays.copyOf(keys, prefill);
+        for (int i = keys.length; i < prefill; i++) {
+            prefillItems[i] = keys[i % keys.length];
+        }
+        Arrays.sort(prefillItems);
+
+        int runCount = 0;
+        long totalTime = 0;
+        double[] throughputs = new double[10];
+        for (int run = 0; run < 10; run++) {
+            sorted = createSorted();
+            sorted.bulkLoad(prefillItems);
+
+            AtomicInteger phase = timed ? new AtomicInteger(WorkerThread.WARMUP)
+                    : null;
+            ArrayList<WorkerThread<T>> workerThreads = new ArrayList<WorkerThread<T>>();
+            for (int i = 0; i < nrThreads; i++) {
+                workerThreads.add(withLatencies(new WorkerThread<T>(i, sorted,
+                        workload, keys, distribution, nrOps, phase,
+                        31L * run + i, workTime)));
+            }
+
+            LockStats.reset();
+            long start = System.currentTimeMillis();
+
+            for (WorkerThread<T> t : workerThreads) {
+                t.start();
+            }
+
+            long measured = 0;
+            if (timed) {
+                sleep(workload.warmupMs);
+                phase.set(WorkerThread.MEASURE);
+                long from = System.nanoTime();
+                sleep(workload.durationMs);
+                phase.set(WorkerThread.STOP);
+                measured = System.nanoTime() - from;
+            }
+
+            for (WorkerThread<T> t : workerThreads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    throw new Error(
+                            "Unexpected InterruptedException. Should not happen.",
+                            e);
+                }
+            }
+            long end = System.currentTimeMillis();
+            lockStats.add(LockStats.collect());
+
+            // Report result; there is no expected content, but it must be sorted.
+            ArrayList<T> result = sorted.toArrayList();
+            boolean isSorted = true;
+            for (int i = 0; i < result.size() - 1 && isSorted; i++) {
+                isSorted = result.get(i).compareTo(result.get(i + 1)) <= 0;
+            }
+            if (!isSorted) {
+                System.out.println("ERROR: not sorted: " + result.toString());
+                break;
+            }
+            if (timed) {
+                long ops = 0;
+                StringBuilder perThread = new StringBuilder();
+                for (WorkerThread<T> t : workerThreads) {
+                    ops += t.getMeasuredOps();
+                    perThread.append(String.format(" %.0f",
+                            t.getMeasuredOps() * 1e9 / measured));
+                }
+                throughputs[runCount] = ops * 1e9 / measured;
+                System.out.printf(
+                        "throughput: %.0f ops/s, %d items left, per thread:%s\n",
+                        throughputs[runCount], result.size(), perThread);
+            } else {
+                System.out.printf("time: %d ms, %d items left\n", end - start,
+                        result.size());
+            }
+            totalTime += end - start;
+            runCount++;
+            if (run > 0 || timed) {
+                mergeLatencies(workerThreads);
+            }
+        }
+        if (runCount > 0 && timed) {
+            double mean = 0;
+            for (int i = 0; i < runCount; i++) {
+                mean += throughputs[i] / runCount;
+            }
+            double variance = 0;
+            for (int i = 0; i < runCount; i++) {
+                variance += (throughputs[i] - mean) * (throughputs[i] - mean)
+                        / runCount;
+            }
+            System.out.printf(Locale.ROOT,
+                    "Average throughput: %f ops/s, stddev %f ops/s (%.1f%%)\n",
+                    mean, Math.sqrt(variance),
+                    100 * Math.sqrt(variance) / mean);
+        } else if (runCount > 0) {
+            /* Locale.ROOT, so that Sweep can parse it */
+            System.out.printf(Locale.ROOT, "Average time: %f ms\n",
+                    (float) totalTime / runCount);
+        }
+        printLatencies();
+        printLockStats();
+    }
+
+    /**
+     * Sleeps for the specified time.
+     *
+     * @param ms
+     *            the time in milliseconds
+     */
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new Error("Unexpected InterruptedException. Should not happen.",
+                    e);
+        }
+    }
+
+    /**
+     * Gives the worker thread its own latency histograms, if latencies are
+     * recorded.
+     *
+     * @param worker
+     *            the worker thread, not started yet
+     * @return the worker thread
+     */
+    private WorkerThread<T> withLatencies(WorkerThread<T> worker) {
+        if (recordLatency) {
+            worker.recordLatencies(new LatencyHistogram(),
+                    new LatencyHistogram());
+        }
+        return worker;
+    }
+
+    /**
+     * Adds the latencies recorded by the finished worker threads to the totals.
+     *
+     * @param workerThreads
+     *            the finished worker threads
+     */
+    private void mergeLatencies(ArrayList<WorkerThread<T>> workerThreads) {
+        if (recordLatency) {
+            for (WorkerThread<T> t : workerThreads) {
+                addLatency.merge(t.getAddLatency());
+                removeLatency.merge(t.getRemoveLatency());
+            }
+        }
+    }
+
+    private void printLockStats() {
+        if (LockStats.ENABLED) {
+            System.out.printf("lock stats: %s\n", lockStats);
+        }
+    }
+
+    private void printLatencies() {
+        if (recordLatency) {
+            System.out.printf("add latency: %s\n", addLatency.summary());
+            System.out.printf("remove latency: %s\n", removeLatency.summary());
         }
     }
 }
@@ -0,0 +1,151 @@
+package data_structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CyclicBarrier;
+
+import data_structures.implementation.IntLazyList;
+import data_structures.implementation.IntLazyTree;
+
+/**
+ * The <code>int</code> counterpart of {@link DoRuns}: adds and then removes
+ * items from an {@link IntSorted} data structure, driven from
+ * <code>int[]</code> work data, so that no item is ever boxed.
+ */
+public class IntDoRuns {
+
+    /** Specifies the number of threads to use. */
+    private final int nrThreads;
+    /** Specifies the items to be added. */
+    private final int[] itemsToAdd;
+    /** Specifies the items to be removed. */
+    private final int[] itemsToRemove;
+    /**
+     * If {@literal >} 0, the threads spend some CPU time in between add or
+     * remove operations.
+     */
+    private final int workTime;
+    /** When set, the data structure is printed after adding the items. */
+    private final boolean debug;
+
+    /** The actual data structure. */
+    private final IntSorted sorted;
+
+    /**
+     * Initializes this object, and instantiates the actual data structure to be
+     * used.
+     *
+     * @param dataStructure
+     *            specifies which kind of data structure to use
+     * @param nrThreads
+     *            specifies the number of threads to use
+     * @param itemsToAdd
+     *            specifies the items to add
+     * @param itemsToRemove
+     *            specifies the items to remove
+     * @param workTime
+     *            if {@literal >} 0, the threads spend some CPU time in between
+     *            add or remove operations.
+     * @param debug
+     *            when set, the data structure is printed after adding the items
+     * @param ascending
+     *            when set, the items are added in ascending order, so that
+     *            every thread adds a sorted range
+     */
+    public IntDoRuns(String dataStructure, int nrThreads, int[] itemsToAdd,
+            int[] itemsToRemove, int workTime, boolean debug,
+            boolean ascending) {
+        this.nrThreads = nrThreads;
+        if (ascending) {
+            itemsToAdd = Arrays.copyOf(itemsToAdd, itemsToAdd.length);
+            Arrays.sort(itemsToAdd);
+        }
+        this.itemsToAdd = itemsToAdd;
+        this.itemsToRemove = itemsToRemove;
+        this.workTime = workTime;
+        this.debug = debug;
+
+        // Determine and allocate the data structure to be used.
+
+        if (dataStructure.equalsIgnoreCase(Main.ILL)) {
+            sorted = new IntLazyList();
+        } else if (dataStructure.equalsIgnoreCase(Main.ILT)) {
+            sorted = new IntLazyTree();
+        } else {
+            sorted = null;
+            Main.exitWithError();
+        }
+    }
+
+    /**
+     * Returns whether the specified data structure is one of the
+     * <code>int</code> specialized ones, to be run by this class instead of
+     * {@link DoRuns}.
+     *
+     * @param dataStructure
+     *            the name of the data structure
+     * @return whether the data structure implements {@link IntSorted}
+     */
+    public static boolean isIntDataStructure(String dataStructure) {
+        return dataStructure.equalsIgnoreCase(Main.ILL)
+                || dataStructure.equalsIgnoreCase(Main.ILT);
+    }
+
+    /**
+     * Runs the test, by first creating the worker threads, then starting them,
+     * and then waiting for them to finish.
+     */
+    public void runDataStructure() {
+        int runCount = 0;
+        long totalTime = 0;
+        for (int run = 0; run < 10; run++) {
+            ArrayList<IntWorkerThread> workerThreads = new ArrayList<IntWorkerThread>();
+            CyclicBarrier barrier = new CyclicBarrier(nrThreads);
+
+            int sz = itemsToAdd.length / nrThreads;
+            for (int i = 0; i < nrThreads; i++) {
+                int[] toAdd = Arrays.copyOfRange(itemsToAdd, i * sz, (i + 1) * sz);
+                int[] toRemove = Arrays.copyOfRange(itemsToRemove, i * sz,
+                        (i + 1) * sz);
+                workerThreads.add(new IntWorkerThread(i, sorted, toAdd,
+                        toRemove, workTime, barrier, debug));
+            }
+
+            // Start worker threads
+            long start = System.currentTimeMillis();
+
+            for (IntWorkerThread t : workerThreads) {
+                t.start();
+            }
+
+            // Wait until worker threads are finished
+            for (IntWorkerThread t : workerThreads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    throw new Error(
+                            "Unexpected InterruptedException. Should not happen.",
+                            e);
+                }
+            }
+            long end = System.currentTimeMillis();
+
+            // Report result.
+            int[] result = sorted.toIntArray();
+            if (result.length > 0) {
+                System.out.println("ERROR: " + Arrays.toString(result));
+                break;
+            } else {
+                System.out.printf("time: %d ms\n", end - start);
+                totalTime += end - start;
+                runCount++;
+            }
+        }
+        if (runCount > 0) {
+            /* Locale.ROOT, so that Sweep can parse it */
+            System.out.printf(Locale.ROOT, "Average time: %f ms\n",
+                    (float) totalTime / runCount);
+        }
+    }
+}
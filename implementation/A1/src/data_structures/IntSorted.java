@@ -0,0 +1,45 @@
+package data_structures;
+
+/**
+ * The <code>IntSorted</code> interface is the primitive <code>int</code>
+ * counterpart of {@link Sorted}. Implementations store the items unboxed and
+ * compare them directly, without going through <code>compareTo</code>.
+ */
+public interface IntSorted {
+
+    /**
+     * Adds the specified element to the data structure. Duplicate elements are
+     * allowed, and should be represented explicitly.
+     *
+     * @param t
+     *            the element to be added.
+     */
+    public void add(int t);
+
+    /**
+     * Removes the specified element from the data structure. If the element
+     * occurs more than once in the data structure, only one instance of it is
+     * removed. If the element is not present, this is silently ignored.
+     *
+     * @param t
+     *            the element to be removed.
+     */
+    public void remove(int t);
+
+    /**
+     * Returns whether the data structure holds the specified element.
+     *
+     * @param t
+     *            the element to look for.
+     * @return whether the element is present.
+     */
+    public boolean contains(int t);
+
+    /**
+     * Returns an array containing all elements in the data structure, in
+     * ascending order.
+     *
+     * @return an array containing the elements.
+     */
+    public int[] toIntArray();
+}
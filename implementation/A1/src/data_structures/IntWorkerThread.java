@@ -0,0 +1,129 @@
+package data_structures;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * The <code>int</code> counterpart of {@link WorkerThread}: adds items to an
+ * {@link IntSorted} data structure, and then removes some other items.
+ */
+public class IntWorkerThread extends Thread {
+
+    /** Thread number. */
+    private final int id;
+    /** The data structure to be used. */
+    private final IntSorted sorted;
+    /** The items to be added by this thread. */
+    private final int[] itemsToAdd;
+    /** The items to be removed by this thread. */
+    private final int[] itemsToRemove;
+    /**
+     * If > 0, CPU time to be spent in between add or remove operations, in
+     * microseconds.
+     */
+    private final int workTime;
+    /**
+     * When set, have thread 0 print the data structure when addition is done.
+     */
+    private final boolean doDebug;
+    /** Barrier to be used after addition. */
+    private final CyclicBarrier barrier;
+
+    ThreadMXBean bean;
+
+    /**
+     * Creates a worker thread with the specified parameters.
+     *
+     * @param id
+     *            the thread number.
+     * @param list
+     *            the data structure.
+     * @param itemsToAdd
+     *            the items to add to the data structure.
+     * @param itemsToRemove
+     *            the items to remove from the data structure.
+     * @param workTime
+     *            if {@literal >} 0, specifies the amount of CPU time to be
+     *            spent in between add or remove operations, in microseconds.
+     * @param barrier
+     *            used to synchronize the threads after adding items.
+     * @param debug
+     *            when set, the data structure is printed when all items have
+     *            been added.
+     */
+    public IntWorkerThread(int id, IntSorted list, int[] itemsToAdd,
+            int[] itemsToRemove, int workTime, CyclicBarrier barrier,
+            boolean debug) {
+        this.sorted = list;
+        this.id = id;
+        this.itemsToAdd = itemsToAdd;
+        this.itemsToRemove = itemsToRemove;
+        this.workTime = workTime;
+        this.barrier = barrier;
+        this.doDebug = debug;
+        if (workTime > 0) {
+            bean = ManagementFactory.getThreadMXBean();
+        }
+    }
+
+    @Override
+    public void run() {
+        // First: add my items.
+        for (int t : itemsToAdd) {
+            doWork();
+            sorted.add(t);
+        }
+
+        // Barrier, and possibly print result.
+        try {
+            barrier.await();
+            if (this.doDebug) {
+                if (this.id == 0) {
+                    int[] result = sorted.toIntArray();
+                    for (int i = 0; i < result.length - 1; i++) {
+                        if (result[i] > result[i + 1]) {
+                            System.err.println(
+                                    "The result is not correctly sorted");
+                            break;
+                        }
+                    }
+                    System.out.printf(
+                            "Output after adding, before removing:\n%s\n",
+                            Arrays.toString(result));
+                }
+                barrier.await();
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } catch (BrokenBarrierException e) {
+            e.printStackTrace();
+        }
+
+        // Remove my items.
+        for (int t : itemsToRemove) {
+            doWork();
+            sorted.remove(t);
+        }
+    }
+
+    /**
+     * Spends some CPU time, but only if {@link #workTime} is {@literal >} 0, in
+     * which case it tries to spend the specified (in microseconds) amount of
+     * CPU time.
+     */
+    private void doWork() {
+        if (bean != null) {
+            // Do some work in between operations. workTime indicates the cpu
+            // time to be consumed, in microseconds.
+            long start = bean.getCurrentThreadCpuTime();
+
+            // getThreadCpuTime() returns cpu time in nano seconds.
+            long end = start + workTime * 1000;
+            while (bean.getCurrentThreadCpuTime() < end)
+                ; // busy until we used enough cpu time.
+        }
+    }
+}
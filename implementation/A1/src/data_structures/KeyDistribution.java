@@ -0,0 +1,127 @@
+package data_structures;
+
+import java.util.Random;
+
+/**
+ * Chooses which key an operation of a {@link Workload} works on, as an index
+ * in a table of keys. The table is in random order, so the keys that are
+ * chosen most often are spread over the key space.
+ */
+abstract class KeyDistribution {
+
+    /**
+     * Returns the index of the next key. Does not allocate, and only uses the
+     * specified random number generator, so it can be shared by all threads.
+     *
+     * @param random
+     *            the random number generator of the calling thread
+     * @return an index in [0, n)
+     */
+    abstract int next(Random random);
+
+    /**
+     * Creates a distribution over <code>n</code> keys from its command line
+     * form: <code>uniform</code>, <code>zipf[:skew]</code> or
+     * <code>hotspot[:keys%:ops%]</code>.
+     *
+     * @param spec
+     *            the distribution, for instance "zipf:0.99"
+     * @param n
+     *            the number of keys
+     * @return the distribution, or <code>null</code> if spec is not valid
+     */
+    static KeyDistribution create(String spec, int n) {
+        String[] parts = spec.split(":");
+        try {
+            if (parts[0].equalsIgnoreCase("uniform") && parts.length == 1) {
+                return new Uniform(n);
+            } else if (parts[0].equalsIgnoreCase("zipf") && parts.length <= 2) {
+                double skew = parts.length == 2 ? Double.parseDouble(parts[1])
+                        : 0.99;
+                return skew > 0 ? new Zipf(n, skew) : null;
+            } else if (parts[0].equalsIgnoreCase("hotspot")
+                    && (parts.length == 1 || parts.length == 3)) {
+                int keys = parts.length == 3 ? Integer.parseInt(parts[1]) : 10;
+                int ops = parts.length == 3 ? Integer.parseInt(parts[2]) : 90;
+                if (keys <= 0 || keys > 100 || ops < 0 || ops > 100) {
+                    return null;
+                }
+                return new Hotspot(n, keys, ops);
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        return null;
+    }
+
+    /** Every key equally likely. */
+    private static class Uniform extends KeyDistribution {
+        private final int n;
+
+        Uniform(int n) {
+            this.n = n;
+        }
+
+        @Override
+        int next(Random random) {
+            return random.nextInt(n);
+        }
+    }
+
+    /**
+     * Key i is chosen with a probability proportional to 1 / (i + 1)^skew.
+     * The cumulative probabilities are computed up front, and every choice is
+     * a binary search in them.
+     */
+    private static class Zipf extends KeyDistribution {
+        private final double[] cdf;
+
+        Zipf(int n, double skew) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, skew);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        @Override
+        int next(Random random) {
+            double u = random.nextDouble();
+            int low = 0, high = cdf.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cdf[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /** A fixed share of the operations goes to a small set of hot keys. */
+    private static class Hotspot extends KeyDistribution {
+        private final int n;
+        private final int hotKeys;
+        private final int hotOpsPercent;
+
+        Hotspot(int n, int hotKeysPercent, int hotOpsPercent) {
+            this.n = n;
+            this.hotKeys = Math.max(1, (int) ((long) n * hotKeysPercent / 100));
+            this.hotOpsPercent = hotOpsPercent;
+        }
+
+        @Override
+        int next(Random random) {
+            if (hotKeys == n || random.nextInt(100) < hotOpsPercent) {
+                return random.nextInt(hotKeys);
+            }
+            return hotKeys + random.nextInt(n - hotKeys);
+        }
+    }
+}
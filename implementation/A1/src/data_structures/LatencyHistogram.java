@@ -0,0 +1,118 @@
+package data_structures;
+
+/**
+ * Histogram of latencies in nano seconds, with logarithmic buckets: every
+ * power of two is split in 16 buckets, so a percentile is accurate to about
+ * 6%. Recording is a few shifts and an array increment, and does not
+ * allocate. Not thread-safe: every thread records into its own histogram, and
+ * they are merged afterwards.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /* enough buckets for any non-negative long */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos
+     *            the latency, in nano seconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)]++;
+        total++;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Adds all latencies recorded in the specified histogram to this one.
+     *
+     * @param other
+     *            the histogram to add
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return the count
+     */
+    public long count() {
+        return total;
+    }
+
+    /**
+     * Returns the largest recorded latency.
+     *
+     * @return the maximum, in nano seconds
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Returns (an upper bound of the bucket of) the latency below which the
+     * specified fraction of the recorded latencies lies.
+     *
+     * @param fraction
+     *            for instance 0.99 for the 99th percentile
+     * @return the percentile, in nano seconds, or 0 if nothing was recorded
+     */
+    public long percentile(double fraction) {
+        long target = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return Math.min(max, highestValue(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns a one line summary, with latencies in micro seconds.
+     *
+     * @return p50, p99, p99.9 and max
+     */
+    public String summary() {
+        return String.format(
+                "p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us (%d ops)",
+                percentile(0.5) / 1e3, percentile(0.99) / 1e3,
+                percentile(0.999) / 1e3, max / 1e3, total);
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS
+                + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -1,7 +1,10 @@
 package data_structures;
 
+import java.util.Arrays;
 import java.util.Random;
 
+import data_structures.locks.LockKind;
+
 /**
  * This is the main program of the Concurrency and Multithreading programming
  * assignment.
@@ -16,12 +19,50 @@ public class Main {
     static final String FGL = "fgl";
     /** Fine-grained tree. */
     static final String FGT = "fgt";
+    /** Lazy list. */
+    static final String LL = "ll";
+    /** Lazy tree. */
+    static final String LT = "lt";
+    /** Lock-free list. */
+    static final String LFL = "lfl";
+    /** Lock-free skip list. */
+    static final String LFSL = "lfsl";
+    /** Lock-free (external) tree. */
+    static final String LFT = "lft";
+    /** Optimistic AVL tree. */
+    static final String AVL = "avl";
+    /** Unrolled list, fine-grained locking on nodes of several items. */
+    static final String UL = "ul";
+    /** Coarse-grained list, with flat combining. */
+    static final String FCCGL = "fccgl";
+    /** Coarse-grained tree, with flat combining. */
+    static final String FCCGT = "fccgt";
+    /** Lazy list, specialized for int items. */
+    static final String ILL = "ill";
+    /** Lazy tree, specialized for int items. */
+    static final String ILT = "ilt";
 
     static String dataStructure;
     static int nrItems;
     static int nrThreads;
     static int workTime;
     static boolean debug = false;
+    static boolean ascending = false;
+    /** When set, the latency of every add and remove is recorded. */
+    static boolean latency = false;
+    /** Items per addAll/removeAll call, 1 to add and remove one by one. */
+    static int batchSize = 1;
+    /** Number of key ranges, each with its own data structure. */
+    static int nrShards = 1;
+    /** Whether concurrent adds and removes of equal items cancel out. */
+    static boolean elimination = false;
+    static LockKind lockKind = LockKind.REENTRANT;
+    /** Whether the lock based data structures count their lock use. */
+    static boolean stats = false;
+    /** Mixed operations to run instead of add all, remove all; or null. */
+    static Workload workload = null;
+    /** Integer keys are drawn from [0, keyRange). */
+    static int keyRange = 1024 * 256;
     static long seed;
 
     /**
@@ -59,6 +100,26 @@ public class Main {
         }
     }
 
+    /**
+     * Permutes an array in a predictable manner, based on a specific seed.
+     * Gives the same permutation as {@link #permute(Integer[], long)}.
+     *
+     * @param array
+     *            the array to permute.
+     * @param seed
+     *            the seed to use for the random number generator.
+     */
+    private static void permute(int[] array, long seed) {
+        Random random = new Random(seed);
+
+        for (int i = 0; i < array.length; i++) {
+            int r = random.nextInt(array.length);
+            int swapped = array[i];
+            array[i] = array[r];
+            array[r] = swapped;
+        }
+    }
+
     /**
      * Fills the specified <code>itemsToAdd</code> and
      * <code>itemsToRemove</code> arrays with pseudo-random numbers, based on
@@ -73,12 +134,38 @@ public class Main {
      *            the seed
      *
      */
-    private static void createWorkData(Integer[] itemsToAdd,
+    public static void createWorkData(Integer[] itemsToAdd,
             Integer[] itemsToRemove, long seed) {
         Random random = new Random(seed);
 
         for (int i = 0; i < itemsToAdd.length; i++) {
-            int nextRandom = random.nextInt(1024 * 256);
+            int nextRandom = random.nextInt(keyRange);
+            itemsToAdd[i] = nextRandom;
+            itemsToRemove[i] = nextRandom;
+        }
+
+        permute(itemsToRemove, seed + 1);
+    }
+
+    /**
+     * Fills the specified <code>int</code> arrays with the same numbers as
+     * {@link #createWorkData(Integer[], Integer[], long)} would, so that boxed
+     * and unboxed runs get identical work.
+     *
+     * @param itemsToAdd
+     *            array to be initialized with items to add
+     * @param itemsToRemove
+     *            array to be initialized with items to remove (the same items
+     *            as <code>ItemsToAdd</code>, but in a different order)
+     * @param seed
+     *            the seed
+     */
+    private static void createWorkData(int[] itemsToAdd, int[] itemsToRemove,
+            long seed) {
+        Random random = new Random(seed);
+
+        for (int i = 0; i < itemsToAdd.length; i++) {
+            int nextRandom = random.nextInt(keyRange);
             itemsToAdd[i] = nextRandom;
             itemsToRemove[i] = nextRandom;
         }
@@ -92,10 +179,21 @@ public class Main {
      */
     static void exitWithError() {
         System.out.println(
-                "run_data_structures <data_structure> <nrThreads> <nrItems> <workTime> [debug]");
+                "run_data_structures <data_structure> <nrThreads> <nrItems> <workTime> [debug] [ascending] [latency] [stats] [elimination] [lock=<kind>] [batch=<n>] [shards=<n>] [range=<n>] [workload options]");
         System.out.println("  where:");
-        System.out.printf("    <data_structure> in {%s, %s, %s, %s}\n", CGL,
-                CGT, FGL, FGT);
+        System.out.printf(
+                "    <data_structure> in {%s, %s, %s, %s, %s, %s, %s, %s, %s, %s}\n",
+                CGL, CGT, FGL, FGT, LL, LT, LFL, LFSL, LFT, AVL);
+        System.out.printf(
+                "                      or, with several items per node, %s\n", UL);
+        System.out.printf(
+                "                      or, with flat combining, {%s, %s}\n",
+                FCCGL, FCCGT);
+        System.out.printf(
+                "                      or, with unboxed int items, {%s, %s}\n",
+                ILL, ILT);
+        System.out.println(
+                "                      (only with debug, ascending and range=)");
         System.out.println("    <nrThreads> is a number > 0");
         System.out.println("    <nrItems> is a number > 0");
         System.out.println("    <workTime> is a number >= 0 (micro seconds)");
@@ -104,11 +202,61 @@ public class Main {
         System.out.println("            the data structure will be printed ");
         System.out.println(
                 "            after adding and before removing the numbers.");
+        System.out.println(
+                "    [ascending] can be omitted. If added, the items are added");
+        System.out.println(
+                "            in ascending order, each thread getting its own range.");
+        System.out.println(
+                "    [latency] can be omitted. If added, the latency of every add and remove");
+        System.out.println(
+                "            is recorded, and percentiles are printed after the runs.");
+        System.out.println(
+                "    [stats] can be omitted. If added, cgt, fgl and fgt count lock acquisitions,");
+        System.out.println(
+                "            contention and traversal lengths (same as -Dsorted.stats=true),");
+        System.out.println(
+                "            and fgl how much of the traversal its finger search saves.");
+        System.out.println(
+                "    [batch=<n>] can be omitted. If added, every thread adds and removes its");
+        System.out.println(
+                "            items with addAll/removeAll, n at a time (not for workloads).");
+        System.out.println(
+                "    [shards=<n>] can be omitted. If added, the keys are split into n ranges");
+        System.out.println(
+                "            sampled from the items, each with its own data structure.");
+        System.out.println(
+                "    [elimination] can be omitted. If added, an add and a remove of equal items");
+        System.out.println(
+                "            that meet cancel out, without using the data structure.");
+        System.out.println(
+                "    [lock=<kind>] can be omitted. Selects the locks of cgt, fgl and fgt,");
+        System.out.printf("            <kind> in %s (default %s)\n",
+                Arrays.toString(LockKind.values()), LockKind.REENTRANT);
+        System.out.println(
+                "    [range=<n>] can be omitted. Integer keys are drawn from [0, n), default 262144.");
+        System.out.println(
+                "    workload options, any of which runs mixed operations on nrItems keys instead:");
+        System.out.println(
+                "      mix=[<contains%>/]<add%>/<remove%>  operation mix, adding up to 100 (default 50/50)");
+        System.out.println(
+                "            or read90 (90/5/5) or read99 (99/0.5/0.5)");
+        System.out.println(
+                "      dist=uniform|zipf[:<skew>]|hotspot[:<keys%>:<ops%>]  key distribution");
+        System.out.println(
+                "            (default uniform; zipf skew 0.99; hotspot 10% of the keys get 90%)");
+        System.out.println(
+                "      prefill=<n>  keys added before the threads start (default nrItems / 2)");
+        System.out.println(
+                "      ops=<n>  operations per thread (default nrItems / nrThreads)");
+        System.out.println(
+                "      duration=<ms>  run for a fixed time instead, and report ops/s");
+        System.out.println(
+                "      warmup=<ms>  time to run before a timed measurement (default 1000)");
         System.exit(1);
     }
 
     static void parseArgs(String[] args) {
-        if (args.length < 4 || args.length > 5) {
+        if (args.length < 4) {
             exitWithError();
         }
 
@@ -133,12 +281,50 @@ public class Main {
             exitWithError();
         }
 
-        if (args.length == 5) {
-            if (args[4].equalsIgnoreCase("debug")) {
+        for (int i = 4; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("debug")) {
                 debug = true;
+            } else if (args[i].equalsIgnoreCase("ascending")) {
+                ascending = true;
+            } else if (args[i].equalsIgnoreCase("latency")) {
+                latency = true;
+            } else if (args[i].equalsIgnoreCase("elimination")) {
+                elimination = true;
+            } else if (args[i].equalsIgnoreCase("stats")) {
+                stats = true;
+                /* read when the lock based data structures are first used */
+                System.setProperty("sorted.stats", "true");
+            } else if (args[i].toLowerCase().startsWith("batch=")) {
+                batchSize = Integer.parseInt(args[i].substring(6));
+                if (batchSize < 1) {
+                    exitWithError();
+                }
+            } else if (args[i].toLowerCase().startsWith("shards=")) {
+                nrShards = Integer.parseInt(args[i].substring(7));
+                if (nrShards < 1) {
+                    exitWithError();
+                }
+            } else if (args[i].toLowerCase().startsWith("range=")) {
+                keyRange = Integer.parseInt(args[i].substring(6));
+                if (keyRange < 1) {
+                    exitWithError();
+                }
+            } else if (Workload.isOption(args[i])) {
+                if (workload == null) {
+                    workload = new Workload();
+                }
+                if (!workload.parseOption(args[i])) {
+                    exitWithError();
+                }
+            } else if (args[i].toLowerCase().startsWith("lock=")) {
+                lockKind = LockKind.fromName(args[i].substring(5));
+                if (lockKind == null) {
+                    exitWithError();
+                }
             } else {
                 System.out.println(
-                        "last argument should be 'debug', or be omitted\n");
+                        "optional arguments should be 'debug', 'ascending', 'latency', 'stats', 'elimination', 'lock=<kind>', 'batch=<n>', 'shards=<n>', 'range=<n>'"
+                                + " and/or workload options\n");
                 System.exit(1);
             }
         }
@@ -146,17 +332,78 @@ public class Main {
         seed = computeSeed(nrThreads, nrItems, workTime);
     }
 
+    /**
+     * Finds an option that was given but that IntDoRuns does not support: it
+     * only adds and removes one item at a time, without the extra modes of
+     * DoRuns.
+     *
+     * @return the option, or null if all options given are supported
+     */
+    static String unsupportedIntOption() {
+        if (workload != null) {
+            return "workload options";
+        }
+        if (latency) {
+            return "latency";
+        }
+        if (stats) {
+            return "stats";
+        }
+        if (batchSize > 1) {
+            return "batch=<n>";
+        }
+        if (nrShards > 1) {
+            return "shards=<n>";
+        }
+        if (elimination) {
+            return "elimination";
+        }
+        if (lockKind != LockKind.REENTRANT) {
+            return "lock=<kind>";
+        }
+        return null;
+    }
+
     public static void main(String[] args) {
         parseArgs(args);
 
+        if (IntDoRuns.isIntDataStructure(dataStructure)) {
+            String option = unsupportedIntOption();
+            if (option != null) {
+                System.out.println(
+                        ILL + " and " + ILT + " do not support " + option);
+                System.exit(1);
+            }
+        }
+
+        if (IntDoRuns.isIntDataStructure(dataStructure)) {
+            int[] itemsToAdd = new int[nrItems];
+            int[] itemsToRemove = new int[nrItems];
+
+            createWorkData(itemsToAdd, itemsToRemove, seed);
+
+            IntDoRuns run = new IntDoRuns(dataStructure, nrThreads, itemsToAdd,
+                    itemsToRemove, workTime, debug, ascending);
+
+            run.runDataStructure();
+            return;
+        }
+
         // Create the items to be added and deleted.
         Integer[] itemsToAdd = new Integer[nrItems];
         Integer[] itemsToRemove = new Integer[nrItems];
 
         createWorkData(itemsToAdd, itemsToRemove, seed);
 
-        DoRuns<Integer> run = new DoRuns<Integer>(dataStructure, nrThreads,
-                itemsToAdd, itemsToRemove, workTime, debug);
+        DoRuns<Integer> run = workload != null
+                ? new DoRuns<Integer>(dataStructure, nrThreads, itemsToAdd,
+                        workload, workTime, lockKind)
+                : new DoRuns<Integer>(dataStructure, nrThreads, itemsToAdd,
+                        itemsToRemove, workTime, debug, ascending, lockKind);
+        run.setRecordLatency(latency);
+        run.setBatchSize(batchSize);
+        run.setShards(nrShards);
+        run.setElimination(elimination);
 
         run.runDataStructure();
     }
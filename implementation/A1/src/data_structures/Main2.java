@@ -63,7 +63,7 @@ public class Main2 {
      * @param seed
      *            the seed
      */
-    private static void createWorkData(String[] itemsToAdd,
+    public static void createWorkData(String[] itemsToAdd,
             String[] itemsToRemove, long seed) {
         Random random = new Random(seed);
         for (int i = 0; i < itemsToAdd.length; i++) {
@@ -85,9 +85,16 @@ public class Main2 {
 
         createWorkData(itemsToAdd, itemsToRemove, Main.seed);
 
-        DoRuns<String> run = new DoRuns<String>(Main.dataStructure,
-                Main.nrThreads, itemsToAdd, itemsToRemove, Main.workTime,
-                Main.debug);
+        DoRuns<String> run = Main.workload != null
+                ? new DoRuns<String>(Main.dataStructure, Main.nrThreads,
+                        itemsToAdd, Main.workload, Main.workTime, Main.lockKind)
+                : new DoRuns<String>(Main.dataStructure, Main.nrThreads,
+                        itemsToAdd, itemsToRemove, Main.workTime, Main.debug,
+                        Main.ascending, Main.lockKind);
+        run.setRecordLatency(Main.latency);
+        run.setBatchSize(Main.batchSize);
+        run.setShards(Main.nrShards);
+        run.setElimination(Main.elimination);
 
         run.runDataStructure();
     }
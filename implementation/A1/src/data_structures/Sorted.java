@@ -1,5 +1,6 @@
 package data_structures;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 
 /**
@@ -30,6 +31,75 @@ public interface Sorted<T extends Comparable<T>> {
      */
     public void remove(T t);
 
+    /**
+     * Returns whether the data structure holds an element equal to the
+     * specified one. The default searches a {@link #snapshot()}, which copies
+     * the whole data structure; implementations override it with a search.
+     *
+     * @param t
+     *            the element to look for.
+     * @return whether the element is present.
+     */
+    public default boolean contains(T t) {
+        for (T item : snapshot()) {
+            if (item.compareTo(t) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds all specified elements, as if by calling {@link #add} for each of
+     * them. Implementations may sort the elements and add them in one pass
+     * over the data structure, in which case other threads can see some of
+     * them added before the call returns.
+     *
+     * @param items
+     *            the elements to be added, which are not changed.
+     */
+    public default void addAll(T[] items) {
+        for (T t : items) {
+            add(t);
+        }
+    }
+
+    /**
+     * Removes all specified elements, as if by calling {@link #remove} for
+     * each of them, in the same way as {@link #addAll}.
+     *
+     * @param items
+     *            the elements to be removed, which are not changed.
+     */
+    public default void removeAll(T[] items) {
+        for (T t : items) {
+            remove(t);
+        }
+    }
+
+    /**
+     * Fills an empty data structure with the specified elements, which must be
+     * sorted. No other thread may use the data structure meanwhile. The
+     * default adds the middle element first, then the middles of both halves,
+     * and so on, so that a search tree without rebalancing comes out balanced.
+     *
+     * @param items
+     *            the elements to be added, in ascending order.
+     */
+    public default void bulkLoad(T[] items) {
+        ArrayDeque<int[]> ranges = new ArrayDeque<int[]>();
+        ranges.add(new int[] { 0, items.length });
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            if (range[0] < range[1]) {
+                int mid = (range[0] + range[1]) >>> 1;
+                add(items[mid]);
+                ranges.add(new int[] { range[0], mid });
+                ranges.add(new int[] { mid + 1, range[1] });
+            }
+        }
+    }
+
     /**
      * Returns an <code>ArrayList</code> containing all elements in the data
      * structure, in the order implied by the data structure. Using an
@@ -41,4 +111,20 @@ public interface Sorted<T extends Comparable<T>> {
      * @return an <code>ArrayList</code> containing the elements.
      */
     public ArrayList<T> toArrayList();
+
+    /**
+     * Returns the elements like {@link #toArrayList()}, but may be called while
+     * other threads add and remove elements. The default is
+     * <code>toArrayList()</code>, which only gives the content of the data
+     * structure at one moment when no other thread changes it meanwhile.
+     * Otherwise, the result is still sorted, but it may miss elements that are
+     * added, removed or moved during the call, or hold elements that were
+     * removed during the call. Implementations that override it say what they
+     * guarantee instead.
+     *
+     * @return an <code>ArrayList</code> containing the elements.
+     */
+    public default ArrayList<T> snapshot() {
+        return toArrayList();
+    }
 }
@@ -0,0 +1,70 @@
+package data_structures;
+
+import data_structures.implementation.AVLTree;
+import data_structures.implementation.CoarseGrainedList;
+import data_structures.implementation.CoarseGrainedTree;
+import data_structures.implementation.FineGrainedList;
+import data_structures.implementation.FineGrainedTree;
+import data_structures.implementation.FlatCombiningSorted;
+import data_structures.implementation.LazyList;
+import data_structures.implementation.LazyTree;
+import data_structures.implementation.LockFreeList;
+import data_structures.implementation.LockFreeSkipList;
+import data_structures.implementation.LockFreeTree;
+import data_structures.implementation.UnrolledList;
+import data_structures.locks.LockKind;
+
+/**
+ * This factory class is responsible for creating {@link Sorted} objects from
+ * the names used on the command line.
+ */
+public class SortedFactory {
+
+    // Prevent accidental construction.
+    private SortedFactory() {
+        // nothing
+    }
+
+    /**
+     * This method creates the data structure with the specified name.
+     *
+     * @param dataStructure
+     *            the name of the data structure, for instance "fgl"
+     * @param lockKind
+     *            the kind of locks used by the coarse- and fine-grained data
+     *            structures
+     * @return the data structure, or <code>null</code> if the name is unknown
+     */
+    public static <T extends Comparable<T>> Sorted<T> create(
+            String dataStructure, LockKind lockKind) {
+        if (dataStructure.equalsIgnoreCase(Main.CGL)) {
+            return new CoarseGrainedList<T>();
+        } else if (dataStructure.equalsIgnoreCase(Main.CGT)) {
+            return new CoarseGrainedTree<T>(lockKind);
+        } else if (dataStructure.equalsIgnoreCase(Main.FGL)) {
+            return new FineGrainedList<T>(lockKind);
+        } else if (dataStructure.equalsIgnoreCase(Main.FGT)) {
+            return new FineGrainedTree<T>(lockKind);
+        } else if (dataStructure.equalsIgnoreCase(Main.LL)) {
+            return new LazyList<T>();
+        } else if (dataStructure.equalsIgnoreCase(Main.LT)) {
+            return new LazyTree<T>();
+        } else if (dataStructure.equalsIgnoreCase(Main.LFL)) {
+            return new LockFreeList<T>();
+        } else if (dataStructure.equalsIgnoreCase(Main.LFSL)) {
+            return new LockFreeSkipList<T>();
+        } else if (dataStructure.equalsIgnoreCase(Main.LFT)) {
+            return new LockFreeTree<T>();
+        } else if (dataStructure.equalsIgnoreCase(Main.AVL)) {
+            return new AVLTree<T>();
+        } else if (dataStructure.equalsIgnoreCase(Main.UL)) {
+            return new UnrolledList<T>(lockKind);
+        } else if (dataStructure.equalsIgnoreCase(Main.FCCGL)) {
+            return new FlatCombiningSorted<T>(new CoarseGrainedList<T>());
+        } else if (dataStructure.equalsIgnoreCase(Main.FCCGT)) {
+            return new FlatCombiningSorted<T>(
+                    new CoarseGrainedTree<T>(lockKind));
+        }
+        return null;
+    }
+}
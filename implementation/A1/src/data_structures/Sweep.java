@@ -0,0 +1,307 @@
+package data_structures;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs {@link Main} (Integer keys) or {@link Main2} (String keys) for every
+ * combination of data structure, number of threads, work time and key type,
+ * each in its own JVM, and prints the results as CSV or JSON, with the
+ * speedup and parallel efficiency relative to the run with 1 thread.
+ *
+ * Usage:
+ *
+ * <pre>
+ * Sweep items=&lt;n&gt; ds=fgl,fgt threads=1,2,4,8 work=0,10 keys=integer,string
+ *       [format=csv|json] [out=&lt;file&gt;] [other arguments for Main]
+ * </pre>
+ *
+ * Arguments that are not for Sweep, such as <code>mix=90/10</code> or
+ * <code>lock=mcs</code>, are passed on to every run. nrItems has to be a
+ * multiple of nrThreads, so every run uses the largest multiple of all the
+ * numbers of threads not above <code>items</code>, the same for every run,
+ * so that the speedups compare equal amounts of work.
+ */
+public class Sweep {
+
+    /** The result of one run. */
+    private static class Result {
+        String keys;
+        String dataStructure;
+        int threads;
+        int workTime;
+        int items;
+        /** "ms" for the average time, "ops/s" for the average throughput. */
+        String unit;
+        double value = Double.NaN;
+        double speedup = Double.NaN;
+        double efficiency = Double.NaN;
+        String error;
+    }
+
+    private static int items = 100000;
+    private static List<String> dataStructures = Arrays.asList(Main.CGT,
+            Main.FGL, Main.FGT);
+    private static List<Integer> threadCounts = Arrays.asList(1, 2, 4, 8);
+    private static List<Integer> workTimes = Arrays.asList(0);
+    private static List<String> keyTypes = Arrays.asList("integer");
+    private static boolean json = false;
+    private static String out = null;
+    private static final List<String> passOn = new ArrayList<String>();
+
+    private static void exitWithError() {
+        System.out.println(
+                "sweep [items=<n>] [ds=<a,b,..>] [threads=<1,2,..>] [work=<0,..>]"
+                        + " [keys=integer,string] [format=csv|json] [out=<file>]"
+                        + " [arguments for Main]");
+        System.exit(1);
+    }
+
+    private static List<Integer> parseInts(String value) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (String s : value.split(",")) {
+            result.add(Integer.parseInt(s.trim()));
+        }
+        return result;
+    }
+
+    private static void parseArgs(String[] args) {
+        try {
+            for (String arg : args) {
+                String lower = arg.toLowerCase();
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (lower.startsWith("items=")) {
+                    items = Integer.parseInt(value);
+                } else if (lower.startsWith("ds=")) {
+                    dataStructures = Arrays.asList(value.split(","));
+                } else if (lower.startsWith("threads=")) {
+                    threadCounts = parseInts(value);
+                } else if (lower.startsWith("work=")) {
+                    workTimes = parseInts(value);
+                } else if (lower.startsWith("keys=")) {
+                    keyTypes = Arrays.asList(value.toLowerCase().split(","));
+                } else if (lower.startsWith("format=")) {
+                    json = value.equalsIgnoreCase("json");
+                    if (!json && !value.equalsIgnoreCase("csv")) {
+                        exitWithError();
+                    }
+                } else if (lower.startsWith("out=")) {
+                    out = value;
+                } else {
+                    passOn.add(arg);
+                }
+            }
+        } catch (NumberFormatException e) {
+            exitWithError();
+        }
+        for (String k : keyTypes) {
+            if (!k.equals("integer") && !k.equals("string")) {
+                exitWithError();
+            }
+        }
+        for (int t : threadCounts) {
+            if (t < 1 || t > items) {
+                exitWithError();
+            }
+        }
+        /* the speedups need a run with 1 thread */
+        if (!threadCounts.contains(1)) {
+            threadCounts = new ArrayList<Integer>(threadCounts);
+            threadCounts.add(0, 1);
+        }
+        /* one item count for all runs, that every number of threads divides */
+        long multiple = 1;
+        for (int t : threadCounts) {
+            multiple = multiple / gcd(multiple, t) * t;
+            if (multiple > items) {
+                exitWithError();
+            }
+        }
+        items -= items % multiple;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Runs Main or Main2 in a new JVM, and takes the average from its output.
+     *
+     * @param result
+     *            the run to do, its value or error is filled in
+     */
+    private static void run(Result result) {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(result.keys.equals("string") ? Main2.class.getName()
+                : Main.class.getName());
+        command.add(result.dataStructure);
+        command.add(Integer.toString(result.threads));
+        command.add(Integer.toString(result.items));
+        command.add(Integer.toString(result.workTime));
+        command.addAll(passOn);
+
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true).start();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("ERROR")) {
+                    result.error = line.length() > 80
+                            ? line.substring(0, 80) + "..." : line;
+                } else if (line.startsWith("Average time:")) {
+                    result.unit = "ms";
+                    result.value = Double.parseDouble(line.split(" ")[2]);
+                } else if (line.startsWith("Average throughput:")) {
+                    result.unit = "ops/s";
+                    result.value = Double.parseDouble(line.split(" ")[2]);
+                }
+            }
+            int exit = process.waitFor();
+            if (result.error == null && (exit != 0 || Double.isNaN(result.value))) {
+                result.error = "exit code " + exit + ", no average reported";
+            }
+        } catch (IOException e) {
+            result.error = e.toString();
+        } catch (InterruptedException e) {
+            throw new Error("Unexpected InterruptedException. Should not happen.",
+                    e);
+        }
+    }
+
+    /**
+     * Fills in the speedup and efficiency of every run, relative to the run
+     * with 1 thread and otherwise the same parameters.
+     *
+     * @param results
+     *            all runs
+     */
+    private static void computeSpeedups(List<Result> results) {
+        for (Result r : results) {
+            for (Result base : results) {
+                if (base.threads == 1 && base.keys.equals(r.keys)
+                        && base.dataStructure.equals(r.dataStructure)
+                        && base.workTime == r.workTime && r.error == null
+                        && base.error == null) {
+                    /* a time gets smaller with more threads, a throughput larger */
+                    r.speedup = r.unit.equals("ms") ? base.value / r.value
+                            : r.value / base.value;
+                    r.efficiency = r.speedup / r.threads;
+                }
+            }
+        }
+    }
+
+    private static void printCsv(PrintStream stream, List<Result> results) {
+        stream.println(
+                "keys,dataStructure,threads,workTime,items,unit,value,speedup,efficiency,error");
+        for (Result r : results) {
+            stream.printf("%s,%s,%d,%d,%d,%s,%s,%s,%s,%s\n", r.keys,
+                    r.dataStructure, r.threads, r.workTime, r.items,
+                    r.unit == null ? "" : r.unit, number(r.value),
+                    number(r.speedup), number(r.efficiency),
+                    r.error == null ? "" : "\"" + r.error.replace("\"", "'") + "\"");
+        }
+    }
+
+    private static void printJson(PrintStream stream, List<Result> results) {
+        stream.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            stream.printf(
+                    "  {\"keys\": %s, \"dataStructure\": %s, \"threads\": %d,"
+                            + " \"workTime\": %d, \"items\": %d, \"unit\": %s,"
+                            + " \"value\": %s, \"speedup\": %s, \"efficiency\": %s,"
+                            + " \"error\": %s}%s\n",
+                    jsonString(r.keys), jsonString(r.dataStructure), r.threads,
+                    r.workTime, r.items, jsonString(r.unit),
+                    jsonNumber(r.value), jsonNumber(r.speedup),
+                    jsonNumber(r.efficiency), jsonString(r.error),
+                    i < results.size() - 1 ? "," : "");
+        }
+        stream.println("]");
+    }
+
+    /* Locale.ROOT, so the decimal separator is a dot whatever the locale */
+    private static String number(double d) {
+        return Double.isNaN(d) ? "" : String.format(Locale.ROOT, "%.4f", d);
+    }
+
+    private static String jsonNumber(double d) {
+        return Double.isNaN(d) ? "null" : String.format(Locale.ROOT, "%.4f", d);
+    }
+
+    /**
+     * Quotes a string for JSON, escaping quotes, backslashes and control
+     * characters.
+     *
+     * @param s
+     *            the string, or null
+     * @return the JSON string, or <code>null</code>
+     */
+    private static String jsonString(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    public static void main(String[] args) throws FileNotFoundException {
+        parseArgs(args);
+
+        List<Result> results = new ArrayList<Result>();
+        for (String keys : keyTypes) {
+            for (String ds : dataStructures) {
+                for (int workTime : workTimes) {
+                    for (int threads : threadCounts) {
+                        Result r = new Result();
+                        r.keys = keys;
+                        r.dataStructure = ds;
+                        r.threads = threads;
+                        r.workTime = workTime;
+                        r.items = items;
+                        System.err.printf("%s %s threads=%d work=%d ... ", keys,
+                                ds, threads, workTime);
+                        run(r);
+                        System.err.println(r.error != null ? r.error
+                                : r.value + " " + r.unit);
+                        results.add(r);
+                    }
+                }
+            }
+        }
+        computeSpeedups(results);
+
+        PrintStream stream = out == null ? System.out : new PrintStream(out);
+        if (json) {
+            printJson(stream, results);
+        } else {
+            printCsv(stream, results);
+        }
+        if (out != null) {
+            stream.close();
+        }
+    }
+}
@@ -3,17 +3,25 @@ package data_structures;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A <code>WorkerThread</code> adds items to a data structure, and then removes
- * some other items.
+ * some other items. Alternatively, it runs a number of operations of a
+ * {@link Workload}.
  *
  * @param <T>
  *            the type of the items.
  */
 public class WorkerThread<T extends Comparable<T>> extends Thread {
+    /** Phases of a timed workload: operations are only counted in MEASURE. */
+    static final int WARMUP = 0;
+    static final int MEASURE = 1;
+    static final int STOP = 2;
 
     /** Thread number. */
     private final int id;
@@ -34,6 +42,33 @@ public class WorkerThread<T extends Comparable<T>> extends Thread {
     private final boolean doDebug;
     /** Barrier to be used after addition. */
     private final CyclicBarrier barrier;
+    /**
+     * If {@literal >} 1, items are added and removed with addAll and
+     * removeAll, this many at a time.
+     */
+    private int batchSize = 1;
+
+    /** The workload to run instead of adding and removing items, or null. */
+    private final Workload workload;
+    /** The keys the workload chooses from. */
+    private final T[] keys;
+    /** Chooses the keys of the workload. */
+    private final KeyDistribution distribution;
+    /** Number of workload operations to perform, if not timed. */
+    private final int nrOps;
+    /** The phase of a timed workload, set by DoRuns; or null. */
+    private final AtomicInteger phase;
+    /** Number of operations done in the MEASURE phase. */
+    private long measuredOps;
+    /** Number of lookups that found their key, so they are not optimized away. */
+    private long found;
+
+    /** If not null, the latencies of add and remove are recorded here. */
+    private LatencyHistogram addLatency, removeLatency;
+    /** Whether the current operation is to be recorded. */
+    private boolean recording = true;
+    /** Random number generator of this thread, for the workload. */
+    private final Random random;
 
     ThreadMXBean bean;
 
@@ -67,6 +102,57 @@ public class WorkerThread<T extends Comparable<T>> extends Thread {
         this.workTime = workTime;
         this.barrier = barrier;
         this.doDebug = debug;
+        this.workload = null;
+        this.keys = null;
+        this.distribution = null;
+        this.nrOps = 0;
+        this.phase = null;
+        this.random = null;
+        if (workTime > 0) {
+            bean = ManagementFactory.getThreadMXBean();
+        }
+    }
+
+    /**
+     * Creates a worker thread that runs operations of a workload.
+     *
+     * @param id
+     *            the thread number.
+     * @param list
+     *            the data structure.
+     * @param workload
+     *            the mix of operations.
+     * @param keys
+     *            the keys to choose from.
+     * @param distribution
+     *            chooses the key of every operation.
+     * @param nrOps
+     *            the number of operations to perform, if phase is null.
+     * @param phase
+     *            if not null, operations are performed until it is STOP, and
+     *            the ones started in MEASURE are counted.
+     * @param seed
+     *            the seed of the random number generator of this thread.
+     * @param workTime
+     *            if {@literal >} 0, specifies the amount of CPU time to be
+     *            spent in between operations, in microseconds.
+     */
+    public WorkerThread(int id, Sorted<T> list, Workload workload, T[] keys,
+            KeyDistribution distribution, int nrOps, AtomicInteger phase,
+            long seed, int workTime) {
+        this.sorted = list;
+        this.id = id;
+        this.itemsToAdd = null;
+        this.itemsToRemove = null;
+        this.workTime = workTime;
+        this.barrier = null;
+        this.doDebug = false;
+        this.workload = workload;
+        this.keys = keys;
+        this.distribution = distribution;
+        this.nrOps = nrOps;
+        this.phase = phase;
+        this.random = new Random(seed);
         if (workTime > 0) {
             bean = ManagementFactory.getThreadMXBean();
         }
@@ -74,10 +160,19 @@ public class WorkerThread<T extends Comparable<T>> extends Thread {
 
     @Override
     public void run() {
+        if (workload != null) {
+            runWorkload();
+            return;
+        }
+
         // First: add my items.
-        for (T t : itemsToAdd) {
-            doWork();
-            sorted.add(t);
+        if (batchSize > 1) {
+            inBatches(itemsToAdd, true);
+        } else {
+            for (T t : itemsToAdd) {
+                doWork();
+                add(t);
+            }
         }
 
         // Barrier, and possibly print result.
@@ -85,7 +180,7 @@ public class WorkerThread<T extends Comparable<T>> extends Thread {
             barrier.await();
             if (this.doDebug) {
                 if (this.id == 0) {
-                    ArrayList<T> result = sorted.toArrayList();
+                    ArrayList<T> result = sorted.snapshot();
                     for (int i = 0; i < result.size() - 1; i++) {
                         if (result.get(i).compareTo(result.get(i + 1)) > 0) {
                             System.err.println(
@@ -93,11 +188,11 @@ public class WorkerThread<T extends Comparable<T>> extends Thread {
                             break;
                         }
                     }
+                    // The others do not wait for this, and may be removing.
                     System.out.printf(
-                            "Output after adding, before removing:\n%s\n",
-                            sorted.toArrayList().toString());
+                            "Output after adding:\n%s\n",
+                            result.toString());
                 }
-                barrier.await();
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -106,8 +201,145 @@ public class WorkerThread<T extends Comparable<T>> extends Thread {
         }
 
         // Remove my items.
-        for (T t : itemsToRemove) {
-            doWork();
+        if (batchSize > 1) {
+            inBatches(itemsToRemove, false);
+        } else {
+            for (T t : itemsToRemove) {
+                doWork();
+                remove(t);
+            }
+        }
+    }
+
+    /**
+     * Makes this thread add and remove its items with addAll and removeAll.
+     * Must be called before the thread is started.
+     *
+     * @param batchSize
+     *            the number of items per call, 1 for single adds and removes
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Adds or removes the items, batchSize at a time. The work time of every
+     * item is spent before its batch, and a recorded latency is that of a
+     * whole batch.
+     *
+     * @param items
+     *            the items to add or remove
+     * @param add
+     *            whether to add or to remove them
+     */
+    private void inBatches(T[] items, boolean add) {
+        for (int i = 0; i < items.length; i += batchSize) {
+            T[] batch = Arrays.copyOfRange(items, i,
+                    Math.min(i + batchSize, items.length));
+            for (int j = 0; j < batch.length; j++) {
+                doWork();
+            }
+            LatencyHistogram latency = add ? addLatency : removeLatency;
+            long start = latency != null ? System.nanoTime() : 0;
+            if (add) {
+                sorted.addAll(batch);
+            } else {
+                sorted.removeAll(batch);
+            }
+            if (latency != null) {
+                latency.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of operations done while the phase was MEASURE.
+     *
+     * @return the number of operations
+     */
+    public long getMeasuredOps() {
+        return measuredOps;
+    }
+
+    /**
+     * Performs the operations of the workload, either a fixed number or until
+     * DoRuns ends the phase.
+     */
+    private void runWorkload() {
+        if (phase == null) {
+            for (int i = 0; i < nrOps; i++) {
+                doOperation();
+            }
+            return;
+        }
+        int p;
+        while ((p = phase.get()) != STOP) {
+            recording = p == MEASURE;
+            doOperation();
+            if (p == MEASURE) {
+                measuredOps++;
+            }
+        }
+    }
+
+    /**
+     * Performs one operation of the workload, on a key chosen by the
+     * distribution.
+     */
+    private void doOperation() {
+        doWork();
+        T key = keys[distribution.next(random)];
+        double choice = random.nextDouble() * 100;
+        if (choice < workload.containsPercent) {
+            if (sorted.contains(key)) {
+                found++;
+            }
+        } else if (choice < workload.containsPercent + workload.addPercent) {
+            add(key);
+        } else {
+            remove(key);
+        }
+    }
+
+    /**
+     * Makes this thread record the latency of every add and remove. Must be
+     * called before the thread is started.
+     *
+     * @param addLatency
+     *            the histogram for adds
+     * @param removeLatency
+     *            the histogram for removes
+     */
+    public void recordLatencies(LatencyHistogram addLatency,
+            LatencyHistogram removeLatency) {
+        this.addLatency = addLatency;
+        this.removeLatency = removeLatency;
+    }
+
+    public LatencyHistogram getAddLatency() {
+        return addLatency;
+    }
+
+    public LatencyHistogram getRemoveLatency() {
+        return removeLatency;
+    }
+
+    private void add(T t) {
+        if (addLatency != null && recording) {
+            long start = System.nanoTime();
+            sorted.add(t);
+            addLatency.record(System.nanoTime() - start);
+        } else {
+            sorted.add(t);
+        }
+    }
+
+    private void remove(T t) {
+        if (removeLatency != null && recording) {
+            long start = System.nanoTime();
+            sorted.remove(t);
+            removeLatency.record(System.nanoTime() - start);
+        } else {
             sorted.remove(t);
         }
     }
@@ -0,0 +1,123 @@
+package data_structures;
+
+/**
+ * Describes a mixed-operation workload, as an alternative to adding all items
+ * and then removing them again: every thread performs a number of operations,
+ * each of which is a contains, an add or a remove of a key chosen from a
+ * {@link KeyDistribution}, on a data structure that was first filled with
+ * some of the keys.
+ *
+ * The workload is set up from command line options of the form
+ * <code>name=value</code>, see {@link #parseOption(String)}.
+ */
+class Workload {
+    /** Percentage of the operations that are lookups with contains. */
+    double containsPercent = 0;
+    /** Percentage of the operations that are adds. */
+    double addPercent = 50;
+    /** Percentage of the operations that are removes. */
+    double removePercent = 50;
+    /**
+     * Named mixes for <code>mix=</code>: read-mostly workloads, where contains
+     * has to scale for the data structure to scale.
+     */
+    private static final String[][] PRESETS = { { "read90", "90/5/5" },
+            { "read99", "99/0.5/0.5" } };
+
+    /** The key distribution, in the form accepted by KeyDistribution. */
+    String distribution = "uniform";
+    /** Number of keys added before the threads start, or -1 for half the keys. */
+    int prefill = -1;
+    /** Number of operations per thread, or -1 for nrItems / nrThreads. */
+    int opsPerThread = -1;
+    /** If > 0, threads run for this long instead of a number of operations. */
+    int durationMs = 0;
+    /** Time the threads run before a timed measurement starts. */
+    int warmupMs = 1000;
+
+    /**
+     * Returns whether the specified command line argument is a workload
+     * option.
+     *
+     * @param arg
+     *            the argument
+     * @return whether arg is one of the workload options
+     */
+    static boolean isOption(String arg) {
+        String name = arg.toLowerCase();
+        return name.startsWith("mix=") || name.startsWith("dist=")
+                || name.startsWith("prefill=") || name.startsWith("ops=")
+                || name.startsWith("duration=") || name.startsWith("warmup=");
+    }
+
+    /**
+     * Sets the option in the specified argument, one of
+     * <code>mix=add/remove</code> or <code>mix=contains/add/remove</code>
+     * (percentages, possibly with decimals, adding up to 100), or one of the
+     * presets <code>mix=read90</code> (90/5/5) and <code>mix=read99</code>
+     * (99/0.5/0.5),
+     * <code>dist=uniform|zipf[:skew]|hotspot[:keys%:ops%]</code>,
+     * <code>prefill=n</code>, <code>ops=n</code>, <code>duration=ms</code> or
+     * <code>warmup=ms</code>.
+     *
+     * @param arg
+     *            the argument
+     * @return whether the option is valid
+     */
+    boolean parseOption(String arg) {
+        int eq = arg.indexOf('=');
+        String name = arg.substring(0, eq).toLowerCase();
+        String value = arg.substring(eq + 1);
+        try {
+            if (name.equals("mix")) {
+                for (String[] preset : PRESETS) {
+                    if (value.equalsIgnoreCase(preset[0])) {
+                        value = preset[1];
+                    }
+                }
+                String[] parts = value.split("/");
+                if (parts.length != 2 && parts.length != 3) {
+                    return false;
+                }
+                int first = parts.length - 2;
+                containsPercent = first == 0 ? 0
+                        : Double.parseDouble(parts[0]);
+                addPercent = Double.parseDouble(parts[first]);
+                removePercent = Double.parseDouble(parts[first + 1]);
+                return containsPercent >= 0 && addPercent >= 0
+                        && removePercent >= 0 && Math.abs(
+                                containsPercent + addPercent + removePercent
+                                        - 100) < 1e-9;
+            } else if (name.equals("dist")) {
+                distribution = value;
+                return KeyDistribution.create(value, 1) != null;
+            } else if (name.equals("prefill")) {
+                prefill = Integer.parseInt(value);
+                return prefill >= 0;
+            } else if (name.equals("ops")) {
+                opsPerThread = Integer.parseInt(value);
+                return opsPerThread > 0;
+            } else if (name.equals("duration")) {
+                durationMs = Integer.parseInt(value);
+                return durationMs > 0;
+            } else if (name.equals("warmup")) {
+                warmupMs = Integer.parseInt(value);
+                return warmupMs >= 0;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("mix=%s/%s/%s dist=%s", percent(containsPercent),
+                percent(addPercent), percent(removePercent), distribution);
+    }
+
+    /* without decimals if there are none */
+    private static String percent(double p) {
+        return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p);
+    }
+}
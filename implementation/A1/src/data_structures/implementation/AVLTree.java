@@ -0,0 +1,699 @@
+package data_structures.implementation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import data_structures.Sorted;
+
+/**
+ * Concurrent relaxed-balance AVL tree with optimistic version validation,
+ * after Bronson, Casper, Chafi and Olukotun, "A Practical Concurrent Binary
+ * Search Tree" (PPoPP 2010).
+ *
+ * Searches take no locks. Instead they read a node's version before following
+ * a child link, and retry if the node has been shrunk by a rotation since then.
+ * Updates lock only the nodes they change. Afterwards, heights are repaired and
+ * nodes rotated bottom-up, so the depth stays logarithmic whatever the
+ * insertion order.
+ *
+ * Equal items share one node, which counts its copies. A node whose count drops
+ * to zero is spliced out if it has at most one child. Otherwise it stays as a
+ * routing node until a rebalance can remove it.
+ */
+public class AVLTree<T extends Comparable<T>> implements Sorted<T> {
+    /* version bits, see Bronson et al. */
+    private static final long UNLINKED = 0x1L;
+    private static final long GROWING = 0x2L;
+    private static final long SHRINKING = 0x4L;
+    private static final long GROW_COUNT_INCR = 1L << 3;
+    private static final long GROW_COUNT_MASK = 0xffL << 3;
+    private static final long SHRINK_COUNT_INCR = 1L << 11;
+
+    private static final int SPIN_COUNT = 100;
+
+    /* results of nodeCondition(), a non-negative result is the new height */
+    private static final int UNLINK_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int NOTHING_REQUIRED = -3;
+
+    private class Node{
+        T item;
+        volatile int height;
+        volatile long version;
+        /* number of copies of item, 0 for a routing node */
+        volatile int count;
+        volatile Node parent, left, right;
+
+        public Node(T t, int height, int count, Node parent, long version,
+                Node left, Node right){
+            this.item = t;
+            this.height = height;
+            this.count = count;
+            this.parent = parent;
+            this.version = version;
+            this.left = left;
+            this.right = right;
+        }
+        public Node child(boolean isLeft){
+            return isLeft ? left : right;
+        }
+        public void setChild(boolean isLeft, Node node){
+            if (isLeft)
+                left = node;
+            else
+                right = node;
+        }
+    }
+
+    /* rootHolder's right child points to the root of the tree. */
+    private final Node rootHolder = new Node(null, 1, 0, null, 0L, null, null);
+
+    public void add(T t) {
+        update(t, 1);
+    }
+
+    public void remove(T t) {
+        update(t, -1);
+    }
+
+    /* takes no locks, see attemptContains */
+    @Override
+    public boolean contains(T t) {
+        while (true){
+            Node root = rootHolder.right;
+            if (root == null)
+                return false;
+            long ovl = root.version;
+            if (isShrinkingOrUnlinked(ovl)){
+                waitUntilChangeCompleted(root, ovl);
+            } else if (root == rootHolder.right){
+                Boolean found = attemptContains(t, root, ovl);
+                if (found != null)
+                    return found;
+            }
+        }
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node curr = rootHolder.right;
+        T last = null;
+        while (curr != null || !stack.isEmpty()){
+            while (curr != null){
+                stack.push(curr);
+                curr = curr.left;
+            }
+            curr = stack.pop();
+            /* a concurrent rotation can bring the traversal back to a node
+             it passed, so only items larger than the last one count */
+            if (last == null || curr.item.compareTo(last) > 0){
+                for (int i = 0; i < curr.count; i++)
+                    list.add(curr.item);
+                last = curr.item;
+            }
+            curr = curr.right;
+        }
+        return list;
+    }
+
+    /**
+     * Adds (delta 1) or removes (delta -1) one copy of t.
+     */
+    private void update(T t, int delta){
+        while (true){
+            Node root = rootHolder.right;
+            if (root == null){
+                if (delta < 0 || attemptInsertIntoEmpty(t))
+                    return;
+            } else {
+                long ovl = root.version;
+                if (isShrinkingOrUnlinked(ovl)){
+                    waitUntilChangeCompleted(root, ovl);
+                } else if (root == rootHolder.right){
+                    if (attemptUpdate(t, delta, rootHolder, root, ovl))
+                        return;
+                }
+            }
+        }
+    }
+
+    private boolean attemptInsertIntoEmpty(T t){
+        synchronized (rootHolder){
+            if (rootHolder.right == null){
+                rootHolder.right = new Node(t, 1, 1, rootHolder, 0L, null, null);
+                rootHolder.height = 2;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Searches for t below node, and applies the update there. The search is
+     * only valid as long as node has not shrunk since nodeVersion was read.
+     * @return false if the caller has to retry from parent
+     */
+    private boolean attemptUpdate(T t, int delta, Node parent, Node node,
+            long nodeVersion){
+        int cmp = t.compareTo(node.item);
+        if (cmp == 0)
+            return attemptNodeUpdate(delta, parent, node);
+
+        boolean isLeft = cmp < 0;
+        while (true){
+            Node child = node.child(isLeft);
+            if (hasShrunkOrUnlinked(nodeVersion, node.version))
+                return false;
+
+            if (child == null){
+                if (delta < 0)
+                    return true; /* not present */
+                Node damaged;
+                synchronized (node){
+                    /* with node locked, no rotation can move us anymore */
+                    if (hasShrunkOrUnlinked(nodeVersion, node.version))
+                        return false;
+                    if (node.child(isLeft) != null)
+                        continue; /* lost a race with another insert */
+                    node.setChild(isLeft, new Node(t, 1, 1, node, 0L, null, null));
+                    damaged = fixHeight_nl(node);
+                }
+                fixHeightAndRebalance(damaged);
+                return true;
+            }
+
+            long childVersion = child.version;
+            if (isShrinkingOrUnlinked(childVersion)){
+                waitUntilChangeCompleted(child, childVersion);
+            } else if (child == node.child(isLeft)){
+                /* the read of child is protected by childVersion from here on */
+                if (hasShrunkOrUnlinked(nodeVersion, node.version))
+                    return false;
+                if (attemptUpdate(t, delta, node, child, childVersion))
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Searches for t below node, in the same way as attemptUpdate, but without
+     * locking anything. The search is only valid as long as node has not
+     * shrunk since nodeVersion was read.
+     * @return whether t is present, or null if the caller has to retry
+     */
+    private Boolean attemptContains(T t, Node node, long nodeVersion){
+        int cmp = t.compareTo(node.item);
+        if (cmp == 0)
+            return node.count > 0;
+
+        boolean isLeft = cmp < 0;
+        while (true){
+            Node child = node.child(isLeft);
+            if (hasShrunkOrUnlinked(nodeVersion, node.version))
+                return null;
+            if (child == null)
+                return false;
+
+            long childVersion = child.version;
+            if (isShrinkingOrUnlinked(childVersion)){
+                waitUntilChangeCompleted(child, childVersion);
+            } else if (child == node.child(isLeft)){
+                if (hasShrunkOrUnlinked(nodeVersion, node.version))
+                    return null;
+                Boolean found = attemptContains(t, child, childVersion);
+                if (found != null)
+                    return found;
+            }
+        }
+    }
+
+    /**
+     * Updates the count of a node holding the item. The parent is only used
+     * to splice the node out.
+     * @return false if the caller has to retry
+     */
+    private boolean attemptNodeUpdate(int delta, Node parent, Node node){
+        if (delta < 0){
+            if (node.count == 0)
+                return true; /* not present */
+            if (node.count == 1 && (node.left == null || node.right == null)){
+                /* last copy of a node that can be spliced out */
+                Node damaged;
+                synchronized (parent){
+                    if (isUnlinked(parent.version) || node.parent != parent)
+                        return false;
+                    synchronized (node){
+                        int count = node.count;
+                        if (count == 0)
+                            return true;
+                        if (count > 1){
+                            node.count = count - 1;
+                            return true;
+                        }
+                        if (!attemptUnlink_nl(parent, node))
+                            return false;
+                    }
+                    damaged = fixHeight_nl(parent);
+                }
+                fixHeightAndRebalance(damaged);
+                return true;
+            }
+        }
+        synchronized (node){
+            if (isUnlinked(node.version))
+                return false;
+            int count = node.count;
+            if (delta > 0){
+                node.count = count + 1; /* also revives a routing node */
+                return true;
+            }
+            if (count == 0)
+                return true;
+            if (count == 1 && (node.left == null || node.right == null))
+                return false; /* can be spliced out now, do that instead */
+            node.count = count - 1;
+            return true;
+        }
+    }
+
+    /**
+     * Splices out a node with at most one child. Both must be locked.
+     * @return whether node could be unlinked
+     */
+    private boolean attemptUnlink_nl(Node parent, Node node){
+        Node parentL = parent.left;
+        Node parentR = parent.right;
+        if (parentL != node && parentR != node)
+            return false; /* node is no longer a child of parent */
+
+        Node left = node.left;
+        Node right = node.right;
+        if (left != null && right != null)
+            return false;
+        Node splice = left != null ? left : right;
+
+        if (parentL == node)
+            parent.left = splice;
+        else
+            parent.right = splice;
+        if (splice != null)
+            splice.parent = parent;
+
+        node.version = UNLINKED;
+        node.count = 0;
+        return true;
+    }
+
+    /**
+     * Checks whether node needs to be unlinked, rebalanced, or just a new
+     * height. The reads are not atomic, but any thread changing a node also
+     * promises to repair it.
+     * @return one of the *_REQUIRED codes, or the new height
+     */
+    private int nodeCondition(Node node){
+        Node nL = node.left;
+        Node nR = node.right;
+
+        if ((nL == null || nR == null) && node.count == 0)
+            return UNLINK_REQUIRED;
+
+        int hN = node.height;
+        int hL0 = height(nL);
+        int hR0 = height(nR);
+
+        int hNRepl = 1 + Math.max(hL0, hR0);
+        int bal = hL0 - hR0;
+        if (bal < -1 || bal > 1)
+            return REBALANCE_REQUIRED;
+
+        return hN != hNRepl ? hNRepl : NOTHING_REQUIRED;
+    }
+
+    /**
+     * Repairs the heights and balance from node up to the root, for as long as
+     * this thread is responsible for the damage.
+     */
+    private void fixHeightAndRebalance(Node node){
+        while (node != null && node.parent != null){
+            int condition = nodeCondition(node);
+            if (condition == NOTHING_REQUIRED || isUnlinked(node.version))
+                return;
+
+            if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED){
+                synchronized (node){
+                    node = fixHeight_nl(node);
+                }
+            } else {
+                Node nParent = node.parent;
+                synchronized (nParent){
+                    if (!isUnlinked(nParent.version) && node.parent == nParent){
+                        synchronized (node){
+                            node = rebalance_nl(nParent, node);
+                        }
+                    }
+                    /* else retry with the new parent */
+                }
+            }
+        }
+    }
+
+    /**
+     * Fixes the height of a locked node.
+     * @return the next damaged node this thread is responsible for, or null
+     */
+    private Node fixHeight_nl(Node node){
+        int c = nodeCondition(node);
+        switch (c){
+            case REBALANCE_REQUIRED:
+            case UNLINK_REQUIRED:
+                return node;
+            case NOTHING_REQUIRED:
+                return null;
+            default:
+                node.height = c;
+                return node.parent;
+        }
+    }
+
+    /**
+     * Unlinks, rotates or fixes the height of n. nParent and n must be locked.
+     * @return the next damaged node, or null
+     */
+    private Node rebalance_nl(Node nParent, Node n){
+        Node nL = n.left;
+        Node nR = n.right;
+
+        if ((nL == null || nR == null) && n.count == 0){
+            if (attemptUnlink_nl(nParent, n))
+                return fixHeight_nl(nParent);
+            return n;
+        }
+
+        int hN = n.height;
+        int hL0 = height(nL);
+        int hR0 = height(nR);
+        int hNRepl = 1 + Math.max(hL0, hR0);
+        int bal = hL0 - hR0;
+
+        if (bal > 1)
+            return rebalanceToRight_nl(nParent, n, nL, hR0);
+        if (bal < -1)
+            return rebalanceToLeft_nl(nParent, n, nR, hL0);
+        if (hNRepl != hN){
+            n.height = hNRepl;
+            return fixHeight_nl(nParent);
+        }
+        return null;
+    }
+
+    private Node rebalanceToRight_nl(Node nParent, Node n, Node nL, int hR0){
+        synchronized (nL){
+            int hL = nL.height;
+            if (hL - hR0 <= 1)
+                return n; /* retry */
+            Node nLR = nL.right;
+            int hLL0 = height(nL.left);
+            int hLR0 = height(nLR);
+            if (hLL0 >= hLR0)
+                return rotateRight_nl(nParent, n, nL, hR0, hLL0, nLR, hLR0);
+            synchronized (nLR){
+                int hLR = nLR.height;
+                if (hLL0 >= hLR)
+                    return rotateRight_nl(nParent, n, nL, hR0, hLL0, nLR, hLR);
+                /* only double rotate if it will not leave nL damaged */
+                int hLRL = height(nLR.left);
+                int b = hLL0 - hLRL;
+                if (b >= -1 && b <= 1 && !((hLL0 == 0 || hLRL == 0) && nL.count == 0))
+                    return rotateRightOverLeft_nl(nParent, n, nL, hR0, hLL0, nLR, hLRL);
+            }
+            /* fix nL first, n will be balanced later if needed */
+            return rebalanceToLeft_nl(n, nL, nLR, hLL0);
+        }
+    }
+
+    private Node rebalanceToLeft_nl(Node nParent, Node n, Node nR, int hL0){
+        synchronized (nR){
+            int hR = nR.height;
+            if (hL0 - hR >= -1)
+                return n; /* retry */
+            Node nRL = nR.left;
+            int hRL0 = height(nRL);
+            int hRR0 = height(nR.right);
+            if (hRR0 >= hRL0)
+                return rotateLeft_nl(nParent, n, hL0, nR, nRL, hRL0, hRR0);
+            synchronized (nRL){
+                int hRL = nRL.height;
+                if (hRR0 >= hRL)
+                    return rotateLeft_nl(nParent, n, hL0, nR, nRL, hRL, hRR0);
+                int hRLR = height(nRL.right);
+                int b = hRR0 - hRLR;
+                if (b >= -1 && b <= 1 && !((hRR0 == 0 || hRLR == 0) && nR.count == 0))
+                    return rotateLeftOverRight_nl(nParent, n, hL0, nR, nRL, hRR0, hRLR);
+            }
+            return rebalanceToRight_nl(n, nR, nRL, hRR0);
+        }
+    }
+
+    private Node rotateRight_nl(Node nParent, Node n, Node nL, int hR, int hLL,
+            Node nLR, int hLR){
+        long nodeVersion = n.version;
+        long leftVersion = nL.version;
+        Node nPL = nParent.left;
+
+        n.version = beginShrink(nodeVersion);
+        nL.version = beginGrow(leftVersion);
+
+        /* links towards shrinking nodes change last, so a search cannot bypass the version */
+        n.left = nLR;
+        nL.right = n;
+        if (nPL == n)
+            nParent.left = nL;
+        else
+            nParent.right = nL;
+
+        nL.parent = nParent;
+        n.parent = nL;
+        if (nLR != null)
+            nLR.parent = n;
+
+        int hNRepl = 1 + Math.max(hLR, hR);
+        n.height = hNRepl;
+        nL.height = 1 + Math.max(hLL, hNRepl);
+
+        nL.version = endGrow(leftVersion);
+        n.version = endShrink(nodeVersion);
+
+        /* nParent, n and nL are damaged now, fix what the held locks allow */
+        int balN = hLR - hR;
+        if (balN < -1 || balN > 1)
+            return n;
+        if ((nLR == null || hR == 0) && n.count == 0)
+            return n;
+        int balL = hLL - hNRepl;
+        if (balL < -1 || balL > 1)
+            return nL;
+        if (hLL == 0 && nL.count == 0)
+            return nL;
+        return fixHeight_nl(nParent);
+    }
+
+    private Node rotateLeft_nl(Node nParent, Node n, int hL, Node nR, Node nRL,
+            int hRL, int hRR){
+        long nodeVersion = n.version;
+        long rightVersion = nR.version;
+        Node nPL = nParent.left;
+
+        n.version = beginShrink(nodeVersion);
+        nR.version = beginGrow(rightVersion);
+
+        n.right = nRL;
+        nR.left = n;
+        if (nPL == n)
+            nParent.left = nR;
+        else
+            nParent.right = nR;
+
+        nR.parent = nParent;
+        n.parent = nR;
+        if (nRL != null)
+            nRL.parent = n;
+
+        int hNRepl = 1 + Math.max(hL, hRL);
+        n.height = hNRepl;
+        nR.height = 1 + Math.max(hNRepl, hRR);
+
+        nR.version = endGrow(rightVersion);
+        n.version = endShrink(nodeVersion);
+
+        int balN = hRL - hL;
+        if (balN < -1 || balN > 1)
+            return n;
+        if ((nRL == null || hL == 0) && n.count == 0)
+            return n;
+        int balR = hRR - hNRepl;
+        if (balR < -1 || balR > 1)
+            return nR;
+        if (hRR == 0 && nR.count == 0)
+            return nR;
+        return fixHeight_nl(nParent);
+    }
+
+    private Node rotateRightOverLeft_nl(Node nParent, Node n, Node nL, int hR,
+            int hLL, Node nLR, int hLRL){
+        long nodeVersion = n.version;
+        long leftVersion = nL.version;
+        long leftRVersion = nLR.version;
+
+        Node nPL = nParent.left;
+        Node nLRL = nLR.left;
+        Node nLRR = nLR.right;
+        int hLRR = height(nLRR);
+
+        n.version = beginShrink(nodeVersion);
+        nL.version = beginShrink(leftVersion);
+        nLR.version = beginGrow(leftRVersion);
+
+        n.left = nLRR;
+        nL.right = nLRL;
+        nLR.left = nL;
+        nLR.right = n;
+        if (nPL == n)
+            nParent.left = nLR;
+        else
+            nParent.right = nLR;
+
+        nLR.parent = nParent;
+        nL.parent = nLR;
+        n.parent = nLR;
+        if (nLRR != null)
+            nLRR.parent = n;
+        if (nLRL != null)
+            nLRL.parent = nL;
+
+        int hNRepl = 1 + Math.max(hLRR, hR);
+        n.height = hNRepl;
+        int hLRepl = 1 + Math.max(hLL, hLRL);
+        nL.height = hLRepl;
+        nLR.height = 1 + Math.max(hLRepl, hNRepl);
+
+        nLR.version = endGrow(leftRVersion);
+        nL.version = endShrink(leftVersion);
+        n.version = endShrink(nodeVersion);
+
+        int balN = hLRR - hR;
+        if (balN < -1 || balN > 1)
+            return n;
+        if ((nLRR == null || hR == 0) && n.count == 0)
+            return n;
+        int balLR = hLRepl - hNRepl;
+        if (balLR < -1 || balLR > 1)
+            return nLR;
+        return fixHeight_nl(nParent);
+    }
+
+    private Node rotateLeftOverRight_nl(Node nParent, Node n, int hL, Node nR,
+            Node nRL, int hRR, int hRLR){
+        long nodeVersion = n.version;
+        long rightVersion = nR.version;
+        long rightLVersion = nRL.version;
+
+        Node nPL = nParent.left;
+        Node nRLL = nRL.left;
+        int hRLL = height(nRLL);
+        Node nRLR = nRL.right;
+
+        n.version = beginShrink(nodeVersion);
+        nR.version = beginShrink(rightVersion);
+        nRL.version = beginGrow(rightLVersion);
+
+        n.right = nRLL;
+        nR.left = nRLR;
+        nRL.left = n;
+        nRL.right = nR;
+        if (nPL == n)
+            nParent.left = nRL;
+        else
+            nParent.right = nRL;
+
+        nRL.parent = nParent;
+        n.parent = nRL;
+        nR.parent = nRL;
+        if (nRLL != null)
+            nRLL.parent = n;
+        if (nRLR != null)
+            nRLR.parent = nR;
+
+        int hNRepl = 1 + Math.max(hL, hRLL);
+        n.height = hNRepl;
+        int hRRepl = 1 + Math.max(hRLR, hRR);
+        nR.height = hRRepl;
+        nRL.height = 1 + Math.max(hNRepl, hRRepl);
+
+        nRL.version = endGrow(rightLVersion);
+        nR.version = endShrink(rightVersion);
+        n.version = endShrink(nodeVersion);
+
+        int balN = hRLL - hL;
+        if (balN < -1 || balN > 1)
+            return n;
+        if ((nRLL == null || hL == 0) && n.count == 0)
+            return n;
+        int balRL = hRRepl - hNRepl;
+        if (balRL < -1 || balRL > 1)
+            return nRL;
+        return fixHeight_nl(nParent);
+    }
+
+    /**
+     * Waits until a rotation that was in progress when version was read is
+     * done. Rotations hold the node's lock, so spinning ends with locking it.
+     */
+    private void waitUntilChangeCompleted(Node node, long version){
+        if (!isChanging(version))
+            return;
+        for (int tries = 0; tries < SPIN_COUNT; tries++){
+            if (node.version != version)
+                return;
+        }
+        synchronized (node){
+            /* nothing, holding the lock means the change is done */
+        }
+    }
+
+    private static int height(AVLTree<?>.Node node){
+        return node == null ? 0 : node.height;
+    }
+
+    private static boolean isChanging(long version){
+        return (version & (GROWING | SHRINKING)) != 0;
+    }
+
+    private static boolean isUnlinked(long version){
+        return version == UNLINKED;
+    }
+
+    private static boolean isShrinkingOrUnlinked(long version){
+        return (version & (SHRINKING | UNLINKED)) != 0;
+    }
+
+    private static boolean hasShrunkOrUnlinked(long orig, long current){
+        return ((orig ^ current) & ~(GROW_COUNT_MASK | GROWING)) != 0;
+    }
+
+    private static long beginGrow(long version){
+        return version | GROWING;
+    }
+
+    private static long endGrow(long version){
+        return version + GROW_COUNT_INCR;
+    }
+
+    private static long beginShrink(long version){
+        return version | SHRINKING;
+    }
+
+    private static long endShrink(long version){
+        return version + SHRINK_COUNT_INCR;
+    }
+}
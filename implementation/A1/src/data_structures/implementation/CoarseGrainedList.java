@@ -1 +1 @@
-package data_structures.implementation;import java.util.ArrayList;import data_structures.Sorted;import java.util.concurrent.locks.ReentrantLock;import java.util.concurrent.locks.Lock;public class CoarseGrainedList<T extends Comparable<T>> implements Sorted<T> {    private class Node{        T item;        Node next;        public Node(T t){            this.item = t;            this.next = null;        }    }    private final Node head = new Node(null);    private final Lock lock = new ReentrantLock();    public void add(T t) {        Node pred, curr;        lock.lock();        try {            pred = head;            curr = pred.next;            while (curr != null && curr.item.compareTo(t) <= 0){                pred = curr;                curr = curr.next;            }            Node node = new Node(t);            node.next = curr;            pred.next = node;        }finally {            lock.unlock();        }    }    public void remove(T t) {        Node curr, pred;        lock.lock();        try {            pred = head;            curr = pred.next;            while (curr != null && !curr.item.equals(t)){                pred = curr;                curr = curr.next;            }            if (curr != null){                pred.next = curr.next;            }        } finally {            lock.unlock();        }    }    public ArrayList<T> toArrayList() {        ArrayList<T> list = new ArrayList<>();        Node temp = head.next;        while (temp != null){            list.add(temp.item);            temp = temp.next;        }        return list;    }}
\ No newline at end of file
+package data_structures.implementation;import java.util.ArrayList;import data_structures.Sorted;import java.util.concurrent.locks.StampedLock;public class CoarseGrainedList<T extends Comparable<T>> implements Sorted<T> {    private class Node{        T item;        Node next;        public Node(T t){            this.item = t;            this.next = null;        }    }    private final Node head = new Node(null);    /* readers first go without it, and check afterwards whether a writer came by */    private final StampedLock lock = new StampedLock();    /* optimistic reads tried before contains takes the read lock */    private static final int OPTIMISTIC_TRIES = 4;    /* nodes visited between two checks for writers */    private static final int CHECK_EVERY = 1024;    public void add(T t) {        Node pred, curr;        long stamp = lock.writeLock();        try {            pred = head;            curr = pred.next;            while (curr != null && curr.item.compareTo(t) <= 0){                pred = curr;                curr = curr.next;            }            Node node = new Node(t);            node.next = curr;            pred.next = node;        }finally {            lock.unlockWrite(stamp);        }    }    public void remove(T t) {        Node curr, pred;        long stamp = lock.writeLock();        try {            pred = head;            curr = pred.next;            while (curr != null && !curr.item.equals(t)){                pred = curr;                curr = curr.next;            }            if (curr != null){                pred.next = curr.next;            }        } finally {            lock.unlockWrite(stamp);        }    }    /**     * Searches without locking, and tries again if a writer came by meanwhile.     * After a few tries, it takes the read lock, which only keeps out writers.     */    @Override    public boolean contains(T t) {        for (int i = 0; i < OPTIMISTIC_TRIES; i++){            long stamp = lock.tryOptimisticRead();            if (stamp != 0){                Boolean found = search(t, stamp);                if (found != null)                    return found;            }            Thread.onSpinWait();        }        long stamp = lock.readLock();        try {            return search(t, stamp);        } finally {            lock.unlockRead(stamp);        }    }    public ArrayList<T> toArrayList() {        ArrayList<T> list = new ArrayList<>();        Node temp = head.next;        while (temp != null){            list.add(temp.item);            temp = temp.next;        }        return list;    }    /* like contains: optimistic copies first, then with the read lock */    @Override    public ArrayList<T> snapshot() {        ArrayList<T> list = new ArrayList<>();        for (int i = 0; i < OPTIMISTIC_TRIES; i++){            long stamp = lock.tryOptimisticRead();            if (stamp != 0 && copy(list, stamp))                return list;            list.clear();            Thread.yield();        }        long stamp = lock.readLock();        try {            copy(list, stamp);            return list;        } finally {            lock.unlockRead(stamp);        }    }    /**     * This method searches an item. Without a lock, the nodes read may be     * half made or already unlinked, so the result only counts if no writer     * came by meanwhile.     * @param t the item to look for     * @param stamp an optimistic read stamp, or the stamp of the read lock     * @return whether t is present, or null if a writer came by     */    private Boolean search(T t, long stamp){        Node curr = head.next;        int visited = 0;        while (curr != null){            T item = curr.item;            if (item == null) /* a node still being made */                return lock.validate(stamp) ? Boolean.FALSE : null;            int c = item.compareTo(t);            if (c >= 0)                return lock.validate(stamp) ? c == 0 : null;            curr = curr.next;            if (++visited % CHECK_EVERY == 0 && !lock.validate(stamp))                return null; /* possibly going around in circles */        }        return lock.validate(stamp) ? Boolean.FALSE : null;    }    /**     * This method copies the list, as carefully as search.     * @param list An ArrayList where list elements are added to     * @param stamp an optimistic read stamp, or the stamp of the read lock     * @return whether the copy is valid     */    private boolean copy(ArrayList<T> list, long stamp){        Node curr = head.next;        int visited = 0;        while (curr != null){            list.add(curr.item);            curr = curr.next;            if (++visited % CHECK_EVERY == 0 && !lock.validate(stamp))                return false; /* possibly going around in circles */        }        return lock.validate(stamp);    }}
\ No newline at end of file
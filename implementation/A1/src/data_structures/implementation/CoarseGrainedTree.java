@@ -1,11 +1,13 @@
 package data_structures.implementation;
 
 import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
 
 import data_structures.Sorted;
+import data_structures.locks.LockKind;
 
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
 
 public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
     private class Node{
@@ -18,54 +20,287 @@ public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
         }
 
     }
+
+    /**
+     * Builds a balanced tree from a sorted range of items, forking the two
+     * halves of large ranges.
+     */
+    private class BuildTask extends RecursiveTask<Node>{
+        private static final long serialVersionUID = 1L;
+        /* below this many items, a range is built by the current thread */
+        static final int SEQUENTIAL = 2048;
+        final T[] items;
+        final int from, to;
+
+        BuildTask(T[] items, int from, int to){
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Node compute(){
+            if (to - from <= SEQUENTIAL)
+                return build(items, from, to);
+            int mid = (from + to) >>> 1;
+            BuildTask left = new BuildTask(items, from, mid);
+            left.fork();
+            Node node = new Node(items[mid]);
+            node.right = new BuildTask(items, mid + 1, to).compute();
+            node.left = left.join();
+            return node;
+        }
+    }
+
     private Node root = null;
-    private final Lock lock = new ReentrantLock();
+    private final Lock lock;
+    /* taken for writing by writers too, once they hold lock, so readers can
+     check whether a writer came by, or keep writers out */
+    private final StampedLock versions = new StampedLock();
+    /* optimistic reads tried before the read lock of versions is taken */
+    private static final int OPTIMISTIC_TRIES = 4;
+    /* nodes visited between two checks for writers */
+    private static final int CHECK_EVERY = 1024;
+    /* removed nodes, reused by add. everything happens under lock, so a node
+     can be reused as soon as it is unlinked */
+    private final NodePool<Node> pool = new NodePool<>();
+
+    public CoarseGrainedTree(){
+        this(LockKind.REENTRANT);
+    }
+    public CoarseGrainedTree(LockKind lockKind){
+        lock = lockKind.newLock();
+    }
 
     public void add(T t) {
-        lock.lock();
+        LockStats.startOperation();
+        long stamp = lockWrite();
+        try{
+            addItem(t);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /* the whole batch under one acquisition of the lock */
+    @Override
+    public void addAll(T[] items) {
+        LockStats.startOperation();
+        long stamp = lockWrite();
         try{
-            Node node = new Node(t);
-            if (root == null){
-                root = node ;
-            } else addNode(node);
+            for (T t : items)
+                addItem(t);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
 
+    @Override
+    public void removeAll(T[] items) {
+        LockStats.startOperation();
+        long stamp = lockWrite();
+        try{
+            for (T t : items)
+                removeItem(t);
         } finally {
-            lock.unlock();
+            unlockWrite(stamp);
         }
     }
 
     public void remove(T t) {
-        lock.lock();
+        LockStats.startOperation();
+        long stamp = lockWrite();
         try {
-             if (root != null){  /* tree is not empty */
-                Node curr = root, parent = null;
-                while (curr != null){
-                    if (curr.item.compareTo(t) == 0) break;
-                    else{
-                        parent = curr;
-                        curr = curr.item.compareTo(t) > 0 ? curr.left : curr.right;
-                    }
-                }
-                 if (curr != null) {    /* node is in the tree */
-                     if(isLeaf(curr))   /* node is a leaf */
-                         removeLeaf(curr,parent);
-                     else if (has2Child(curr)) /* node with 2 children */
-                         remove2Child(curr);
-                     else
-                         remove1Child(curr,parent); /* node with 1 child */
-                 }
-             }
+            removeItem(t);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Builds a balanced tree from the sorted items, with fork/join over
+     * subranges. Adds them one by one if the tree is not empty.
+     */
+    @Override
+    public void bulkLoad(T[] items) {
+        long stamp = lockWrite();
+        try {
+            if (root != null){
+                for (T t : items)
+                    addItem(t);
+                return;
+            }
+            root = new BuildTask(items, 0, items.length).invoke();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Searches without locking, and tries again if a writer came by meanwhile.
+     * After a few tries, it takes the read lock of versions, which only keeps
+     * out writers.
+     */
+    @Override
+    public boolean contains(T t) {
+        for (int i = 0; i < OPTIMISTIC_TRIES; i++){
+            long stamp = versions.tryOptimisticRead();
+            if (stamp != 0){
+                Boolean found = search(t, stamp);
+                if (found != null)
+                    return found;
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = versions.readLock();
+        try {
+            return search(t, stamp);
         } finally {
-            lock.unlock();
+            versions.unlockRead(stamp);
         }
     }
 
     public ArrayList<T> toArrayList() {
+        return snapshot();
+    }
+
+    /* like contains: optimistic copies first, then with the read lock */
+    @Override
+    public ArrayList<T> snapshot() {
         ArrayList<T> list = new ArrayList<>();
-        inOrderAddToList(root,list);
-        return list;
+        for (int i = 0; i < OPTIMISTIC_TRIES; i++){
+            long stamp = versions.tryOptimisticRead();
+            if (stamp != 0 && copy(list, stamp))
+                return list;
+            list.clear();
+            Thread.yield();
+        }
+        long stamp = versions.readLock();
+        try {
+            copy(list, stamp);
+            return list;
+        } finally {
+            versions.unlockRead(stamp);
+        }
     }
 
+    /**
+     * This method builds a balanced tree from a sorted range of items.
+     * @param items the sorted items
+     * @param from the first item of the range
+     * @param to the item after the last one of the range
+     * @return the root of the tree, null for an empty range
+     */
+    private Node build(T[] items, int from, int to){
+        if (from >= to)
+            return null;
+        int mid = (from + to) >>> 1;
+        Node node = new Node(items[mid]);
+        node.left = build(items, from, mid);
+        node.right = build(items, mid + 1, to);
+        return node;
+    }
+
+    /**
+     * This method takes lock, and then the write lock of versions.
+     * @return the stamp to unlock versions with
+     */
+    private long lockWrite(){
+        LockStats.lock(lock, true);
+        return versions.writeLock();
+    }
+
+    private void unlockWrite(long stamp){
+        versions.unlockWrite(stamp);
+        lock.unlock();
+    }
+
+    /**
+     * This method searches an item. Without a lock, the nodes read may be
+     * anything, so every step is careful, and the stamp is checked at the end.
+     * @param t the item to find
+     * @param stamp an optimistic read stamp, or the stamp of the read lock
+     * @return whether t is in the tree, or null if a writer came by
+     */
+    private Boolean search(T t, long stamp){
+        Node curr = root;
+        int visited = 0;
+        while (curr != null){
+            T item = curr.item;
+            if (item == null) /* a node still being made */
+                return versions.validate(stamp) ? Boolean.FALSE : null;
+            int c = item.compareTo(t);
+            if (c == 0)
+                break;
+            curr = c > 0 ? curr.left : curr.right;
+            if (++visited % CHECK_EVERY == 0 && !versions.validate(stamp))
+                return null; /* possibly going around in circles */
+        }
+        boolean found = curr != null;
+        return versions.validate(stamp) ? found : null;
+    }
+
+    /**
+     * This method copies the tree in-order, as carefully as search.
+     * @param list An ArrayList where tree elements are added to
+     * @param stamp an optimistic read stamp, or the stamp of the read lock
+     * @return whether the copy is valid
+     */
+    private boolean copy(ArrayList<T> list, long stamp){
+        ArrayList<Node> stack = new ArrayList<>();
+        Node curr = root;
+        int visited = 0;
+        while (curr != null || !stack.isEmpty()){
+            while (curr != null){
+                stack.add(curr);
+                curr = curr.left;
+                if (++visited % CHECK_EVERY == 0 && !versions.validate(stamp))
+                    return false;
+            }
+            curr = stack.remove(stack.size() - 1);
+            list.add(curr.item);
+            curr = curr.right;
+        }
+        return versions.validate(stamp);
+    }
+
+    /**
+     * This method adds an item. The lock must be held.
+     * @param t the item to add
+     */
+    private void addItem(T t){
+        Node node = newNode(t);
+        if (root == null){
+            root = node ;
+        } else addNode(node);
+    }
+
+    /**
+     * This method removes one instance of an item, if present. The lock must
+     * be held.
+     * @param t the item to remove
+     */
+    private void removeItem(T t){
+        if (root != null){  /* tree is not empty */
+            Node curr = root, parent = null;
+            while (curr != null){
+                if (curr.item.compareTo(t) == 0) break;
+                else{
+                    parent = curr;
+                    curr = curr.item.compareTo(t) > 0 ? curr.left : curr.right;
+                    LockStats.step();
+                }
+            }
+            if (curr != null) {    /* node is in the tree */
+                if(isLeaf(curr))   /* node is a leaf */
+                    removeLeaf(curr,parent);
+                else if (has2Child(curr)) /* node with 2 children */
+                    remove2Child(curr);
+                else
+                    remove1Child(curr,parent); /* node with 1 child */
+            }
+        }
+    }
 
     /**
      * This method removes a leaf node from the tree.
@@ -79,7 +314,7 @@ public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
             parent.left = null;
         else
             parent.right = null;
-
+        pool.free(curr);
     }
 
     /**
@@ -94,6 +329,7 @@ public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
             parent.left = getChild(curr);
         else
             parent.right = getChild(curr);
+        pool.free(curr);
     }
 
     /**
@@ -107,16 +343,18 @@ public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
         if ( successor.left == null ){ /* right child node is the successor */
             curr.item = successor.item;
             curr.right = successor.right; /* either a child node or null */
+            pool.free(successor);
             return;
         }
         while ( successor.left != null ) /* right child node was not the successor. get the MIN of the subtree */
         {
             parent = successor;
             successor = successor.left;
+            LockStats.step();
         }
         curr.item = successor.item;
         parent.left = successor.right; /* parent node points to successor's right child */
-
+        pool.free(successor);
     }
 
     /**
@@ -132,6 +370,7 @@ public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
                     return;
                 } else {
                     curr = curr.left;
+                    LockStats.step();
                 }
             } else { /* newNode is equal or greater than the current node */
                 if (curr.right == null){
@@ -139,6 +378,7 @@ public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
                     return;
                 } else {
                     curr = curr.right;
+                    LockStats.step();
                 }
             }
         }
@@ -146,17 +386,18 @@ public class CoarseGrainedTree<T extends Comparable<T>> implements Sorted<T> {
     }
 
     /**
-     * This method adds all of the elements in the tree to the arrayList, using in-order
-     * recursive tree traversal.
-     * @param root  Root of the tree
-     * @param list  An ArrayList where tree elements are added to
+     * This method takes a node from the pool, or allocates one if the pool is
+     * empty.
+     * @param t the item of the node
+     * @return an unlinked node holding t
      */
-    private void inOrderAddToList(Node root, ArrayList<T> list){
-        if (root != null){
-            inOrderAddToList(root.left, list);
-            list.add(root.item);
-            inOrderAddToList(root.right,list);
-        }
+    private Node newNode(T t){
+        Node node = pool.get();
+        if (node == null)
+            return new Node(t);
+        node.item = t;
+        node.left = node.right = null;
+        return node;
     }
 
     /**
@@ -0,0 +1,135 @@
+package data_structures.implementation;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import data_structures.Sorted;
+
+/**
+ * An elimination layer in front of any {@link Sorted}: an add(x) and a
+ * remove(x) that run at the same time cancel out, as if the add went just
+ * before the remove, without either of them touching the data structure.
+ *
+ * An operation first waits a little while in the slot of its key, in case the
+ * opposite operation on an equal key turns up, and otherwise goes to the data
+ * structure. The slot is picked by the hash of the key, not at random, so that
+ * the operations that can cancel out meet each other. How long to wait adapts
+ * per thread: it doubles after an elimination and halves after a timeout, so
+ * threads that never find a partner soon hardly wait at all. Items that are
+ * equal by compareTo must have the same hash code.
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class EliminationSorted<T extends Comparable<T>> implements Sorted<T> {
+    private static final int WAITING = 0;
+    private static final int MATCHED = 1;
+    private static final int WITHDRAWN = 2;
+    /* bounds of the number of spins an offer waits for a partner */
+    private static final int MIN_SPINS = 4;
+    private static final int MAX_SPINS = 1024;
+    /* spins before a waiting thread yields, as in the spin locks */
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    private class Offer{
+        final boolean add;
+        final T item;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        public Offer(boolean add, T item){
+            this.add = add;
+            this.item = item;
+        }
+    }
+
+    private final Sorted<T> sorted;
+    private final AtomicReferenceArray<Offer> slots;
+    /* per thread, the current number of spins to wait for a partner */
+    private final ThreadLocal<int[]> spins = ThreadLocal.withInitial(() -> new int[] { MIN_SPINS });
+
+    /**
+     * @param sorted the data structure the operations that are not eliminated
+     *            go to
+     * @param width the number of slots, about the number of threads
+     */
+    public EliminationSorted(Sorted<T> sorted, int width){
+        this.sorted = sorted;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, width));
+    }
+
+    public void add(T t) {
+        if (!eliminate(true, t))
+            sorted.add(t);
+    }
+
+    public void remove(T t) {
+        if (!eliminate(false, t))
+            sorted.remove(t);
+    }
+
+    /* an offer that is still waiting has not happened yet */
+    @Override
+    public boolean contains(T t) {
+        return sorted.contains(t);
+    }
+
+    @Override
+    public void bulkLoad(T[] items) {
+        sorted.bulkLoad(items);
+    }
+
+    public ArrayList<T> toArrayList() {
+        return sorted.toArrayList();
+    }
+
+    /* an eliminated pair never shows up in the data structure */
+    @Override
+    public ArrayList<T> snapshot() {
+        return sorted.snapshot();
+    }
+
+    /**
+     * This method tries to cancel out an operation against the opposite one
+     * on an equal item, either by taking an offer from the slot, or by making
+     * one and waiting for a partner.
+     * @param add whether the operation is an add
+     * @param t the item
+     * @return whether the operation was eliminated, and is done
+     */
+    private boolean eliminate(boolean add, T t){
+        int i = slotOf(t);
+        Offer other = slots.get(i);
+        if (other != null){
+            if (other.add != add && other.item.compareTo(t) == 0
+                    && other.state.compareAndSet(WAITING, MATCHED)){
+                slots.compareAndSet(i, other, null);
+                return true;
+            }
+            return false; /* the slot is taken, no time to lose */
+        }
+        Offer offer = new Offer(add, t);
+        if (!slots.compareAndSet(i, null, offer))
+            return false;
+        int[] limit = spins.get();
+        for (int n = 1; n <= limit[0]; n++){
+            if (offer.state.get() == MATCHED)
+                break;
+            if (n % SPINS_BEFORE_YIELD == 0)
+                Thread.yield();
+            else
+                Thread.onSpinWait();
+        }
+        boolean withdrawn = offer.state.compareAndSet(WAITING, WITHDRAWN);
+        slots.compareAndSet(i, offer, null);
+        limit[0] = withdrawn ? Math.max(MIN_SPINS, limit[0] / 2)
+                : Math.min(MAX_SPINS, limit[0] * 2);
+        return !withdrawn;
+    }
+
+    private int slotOf(T t){
+        int h = t.hashCode();
+        h ^= h >>> 16;
+        return Math.floorMod(h, slots.length());
+    }
+}
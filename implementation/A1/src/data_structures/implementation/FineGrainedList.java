@@ -1,59 +1,97 @@
 package data_structures.implementation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import data_structures.Sorted;
-import java.util.concurrent.locks.ReentrantLock;
+import data_structures.locks.LockKind;
 import java.util.concurrent.locks.Lock;
 
+/**
+ * Sorted linked list with hand-over-hand locking.
+ *
+ * Every thread remembers the node where its last add or remove took place, its
+ * finger, and starts its next add or remove there instead of at the head if
+ * that node is still in the list and comes before the item. Threads that work
+ * through nearby or ascending items then hardly traverse the list at all.
+ */
 public class FineGrainedList<T extends Comparable<T>> implements Sorted<T> {
     private class Node{
         T item;
-        Node next;
+        volatile Node next;
+        /* set while the node is not in the list: until it is linked, and from
+         just before it is unlinked. it is only unlinked with its lock held, so
+         whoever holds the lock and sees it unmarked knows it is in the list */
+        volatile boolean marked;
         Lock lock;
 
         public Node(T t){
             this.item = t;
             this.next = null;
-            this.lock = new ReentrantLock();
+            this.marked = false;
+            this.lock = lockKind.newLock();
         }
         public void lock(){
-            this.lock.lock();
+            LockStats.lock(this.lock, this == head);
         }
         public void unlock(){
             this.lock.unlock();
         }
 
     }
-    private final Node head = new Node(null);
-    private final Node tail = new Node(null);
+
+    /* where the last add or remove of a thread took place */
+    private class Finger{
+        Node node;
+        /* the steps from the head to node at the time, an estimate of what
+         starting there saves */
+        int depth;
+    }
+
+    /* the kind of lock every node gets */
+    private final LockKind lockKind;
+    private final Node head;
+    private final Node tail;
+    /* removed nodes, reused by add. hand-over-hand locking keeps the updates
+     away from an unlinked node, but contains takes no locks, so removed nodes
+     are retired until no contains can still be on them */
+    private final NodePool<Node> pool = new NodePool<>();
+    private final ThreadLocal<Finger> finger = ThreadLocal.withInitial(() -> new Finger());
     public FineGrainedList(){
+        this(LockKind.REENTRANT);
+    }
+    public FineGrainedList(LockKind lockKind){
+        this.lockKind = lockKind;
+        head = new Node(null);
+        tail = new Node(null);
         head.next = tail;
     }
 
     public void add(T t) {
-        Node newNode = new Node(t);
-        head.lock();
+        LockStats.startOperation();
+        Node newNode = newNode(t);
+        Finger finger = this.finger.get();
         Node curr;
-        Node pred = head;
+        Node pred = lockStart(finger, t, true);
+        int depth = pred == head ? 0 : finger.depth;
         try{
             curr = pred.next;
             curr.lock();
             try {
-                while (!curr.equals(tail) ){
-                    if(curr.item.compareTo(t) > 0){
-                        pred.next = newNode;
-                        newNode.next = curr;
-                        //break;
-                        return;
-                    }
+                while (!curr.equals(tail) && curr.item.compareTo(t) <= 0){
                     pred.unlock();
                     pred = curr;
                     curr = curr.next;
+                    depth++;
+                    LockStats.step();
                     curr.lock();
                 }
                 newNode.next = curr;
                 pred.next = newNode;
+                newNode.marked = false;
+                /* the next add of a larger item can start at the new node */
+                finger.node = newNode;
+                finger.depth = depth + 1;
             } finally {
                 curr.unlock();
             }
@@ -63,8 +101,10 @@ public class FineGrainedList<T extends Comparable<T>> implements Sorted<T> {
     }
 
     public void remove(T t) {
-        Node pred = head, curr;
-        pred.lock();
+        LockStats.startOperation();
+        Finger finger = this.finger.get();
+        Node pred = lockStart(finger, t, false), curr, removed = null;
+        int depth = pred == head ? 0 : finger.depth;
         try {
             curr = pred.next;
             curr.lock();
@@ -73,10 +113,63 @@ public class FineGrainedList<T extends Comparable<T>> implements Sorted<T> {
                     pred.unlock();
                     pred = curr;
                     curr = curr.next;
+                    depth++;
+                    LockStats.step();
                     curr.lock();
                 }
+                if (pred != head){
+                    finger.node = pred;
+                    finger.depth = depth;
+                }
                 if(!curr.equals(tail)){
+                    curr.marked = true;
                     pred.next = curr.next;
+                    removed = curr;
+                }
+            } finally {
+                curr.unlock();
+            }
+        } finally {
+            pred.unlock();
+        }
+        if (removed != null)
+            pool.retire(removed);
+    }
+
+    /**
+     * Sorts the items, and inserts them all in one hand-over-hand pass, so
+     * every lock on the way is taken once per batch instead of once per item.
+     */
+    @Override
+    public void addAll(T[] items) {
+        LockStats.startOperation();
+        T[] batch = items.clone();
+        Arrays.sort(batch);
+        ArrayList<Node> nodes = new ArrayList<>(batch.length);
+        for (T t : batch)
+            nodes.add(newNode(t));
+        Node pred = head, curr;
+        pred.lock();
+        try {
+            curr = pred.next;
+            curr.lock();
+            try {
+                for (Node node : nodes){
+                    /* equal items go after the existing ones, as in add */
+                    while (curr != tail && curr.item.compareTo(node.item) <= 0){
+                        pred.unlock();
+                        pred = curr;
+                        curr = curr.next;
+                        LockStats.step();
+                        curr.lock();
+                    }
+                    /* the new node takes over from pred, the next item goes after it */
+                    node.lock();
+                    node.next = curr;
+                    pred.next = node;
+                    node.marked = false;
+                    pred.unlock();
+                    pred = node;
                 }
             } finally {
                 curr.unlock();
@@ -86,6 +179,78 @@ public class FineGrainedList<T extends Comparable<T>> implements Sorted<T> {
         }
     }
 
+    /**
+     * Sorts the items, and removes them all in one hand-over-hand pass.
+     */
+    @Override
+    public void removeAll(T[] items) {
+        LockStats.startOperation();
+        T[] batch = items.clone();
+        Arrays.sort(batch);
+        ArrayList<Node> removed = new ArrayList<>();
+        Node pred = head, curr;
+        pred.lock();
+        try {
+            curr = pred.next;
+            curr.lock();
+            try {
+                for (T t : batch){
+                    while (curr != tail && curr.item.compareTo(t) < 0){
+                        pred.unlock();
+                        pred = curr;
+                        curr = curr.next;
+                        LockStats.step();
+                        curr.lock();
+                    }
+                    if (curr != tail && curr.item.compareTo(t) == 0){
+                        /* unlink curr, and continue with its successor */
+                        Node next = curr.next;
+                        next.lock();
+                        curr.marked = true;
+                        pred.next = next;
+                        curr.unlock();
+                        removed.add(curr);
+                        curr = next;
+                    }
+                }
+            } finally {
+                curr.unlock();
+            }
+        } finally {
+            pred.unlock();
+        }
+        for (Node node : removed)
+            pool.retire(node);
+    }
+
+    /* the items are sorted already, so one pass of addAll does it */
+    @Override
+    public void bulkLoad(T[] items) {
+        addAll(items);
+    }
+
+    /**
+     * Searches without any locks, as in a lazy list: nodes are marked before
+     * they are unlinked, and an unlinked node still leads back into the list.
+     */
+    @Override
+    public boolean contains(T t) {
+        pool.enter();
+        try {
+            Node curr = head.next;
+            while (curr != tail && curr.item.compareTo(t) < 0)
+                curr = curr.next;
+            while (curr != tail && curr.item.compareTo(t) == 0){
+                if (!curr.marked)
+                    return true;
+                curr = curr.next;
+            }
+            return false;
+        } finally {
+            pool.exit();
+        }
+    }
+
     public ArrayList<T> toArrayList() {
         ArrayList<T> list = new ArrayList<>();
         Node temp = head.next;
@@ -96,4 +261,47 @@ public class FineGrainedList<T extends Comparable<T>> implements Sorted<T> {
         }
         return list;
     }
+
+    /**
+     * This method locks the node an add or remove starts at: the finger of the
+     * calling thread if that is still in the list and before t, or else the
+     * head. No other locks are held yet, so locking out of list order is fine.
+     * @param finger the finger of the calling thread
+     * @param t the item to add or remove
+     * @param orEqual whether the node may hold an item equal to t
+     * @return the locked node, with an item smaller than t unless it is head
+     */
+    private Node lockStart(Finger finger, T t, boolean orEqual){
+        Node node = finger.node;
+        if (node != null){
+            node.lock();
+            /* unmarked means linked, and it stays so while we hold its lock */
+            if (!node.marked){
+                int c = node.item.compareTo(t);
+                if (c < 0 || (orEqual && c == 0)){
+                    LockStats.skip(finger.depth);
+                    return node;
+                }
+            }
+            node.unlock();
+        }
+        head.lock();
+        return head;
+    }
+
+    /**
+     * This method takes a node from the pool, or allocates one if the pool is
+     * empty.
+     * @param t the item of the node
+     * @return an unlinked, marked node holding t
+     */
+    private Node newNode(T t){
+        Node node = pool.get();
+        if (node == null)
+            node = new Node(t);
+        node.item = t;
+        node.next = null;
+        node.marked = true;
+        return node;
+    }
 }
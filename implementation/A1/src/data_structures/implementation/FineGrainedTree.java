@@ -1,44 +1,137 @@
 package data_structures.implementation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import data_structures.Sorted;
+import data_structures.locks.LockKind;
 
 public class FineGrainedTree<T extends Comparable<T>> implements Sorted<T> {
 
 
     private class Node{
-        T item;
-        Node left, right;
+        /* volatile, for the lock-free reads of snapshot and contains */
+        volatile T item;
+        volatile Node left, right;
+        /* set just before the node is unlinked, for contains */
+        volatile boolean marked;
+        /* odd while the item, the children or marked are being changed */
+        volatile int version;
         Lock lock;
 
         public Node(T t){
             this.item = t;
             this.left = this.right = null;
-            this.lock = new ReentrantLock();
+            this.marked = false;
+            this.lock = lockKind.newLock();
         }
         public void lock(){
-            this.lock.lock();
+            LockStats.lock(this.lock, this == headNode);
         }
         public void unlock(){
             this.lock.unlock();
         }
 
     }
+
+    /**
+     * Builds a balanced tree from a sorted range of items, forking the two
+     * halves of large ranges.
+     */
+    private class BuildTask extends RecursiveTask<Node>{
+        private static final long serialVersionUID = 1L;
+        /* below this many items, a range is built by the current thread */
+        static final int SEQUENTIAL = 2048;
+        final T[] items;
+        final int from, to;
+
+        BuildTask(T[] items, int from, int to){
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Node compute(){
+            if (to - from <= SEQUENTIAL)
+                return build(items, from, to);
+            int mid = (from + to) >>> 1;
+            BuildTask left = new BuildTask(items, from, mid);
+            left.fork();
+            Node node = new Node(items[mid]);
+            node.right = new BuildTask(items, mid + 1, to).compute();
+            node.left = left.join();
+            return node;
+        }
+    }
+
+    /**
+     * The nodes a reader went through, with the version each had when it was
+     * read.
+     */
+    private class Reads{
+        static final int INITIAL = 16;
+        Node[] nodes = newNodes(INITIAL);
+        int[] versions = new int[INITIAL];
+        int size = 0;
+
+        void add(Node node, int version){
+            if (size == nodes.length){
+                nodes = Arrays.copyOf(nodes, size * 2);
+                versions = Arrays.copyOf(versions, size * 2);
+            }
+            nodes[size] = node;
+            versions[size++] = version;
+        }
+        Node pop(){
+            return nodes[--size];
+        }
+        /* the index of the first node whose version changed, or size */
+        int firstChanged(){
+            for (int i = 0; i < size; i++){
+                if (nodes[i].version != versions[i])
+                    return i;
+            }
+            return size;
+        }
+    }
+
    /*headNode's right child points to the root of the tree. it'd be NULL if tree is empty
     the left child is always NULL*/
-   private final Node headNode = new Node(null);
+   private final Node headNode;
+   /* the kind of lock every node gets */
+   private final LockKind lockKind;
+   /* removed nodes, reused by add. updates can not reach a node without its
+    parent's lock, but contains takes no locks, so removed nodes are retired
+    until no contains can still be on them */
+   private final NodePool<Node> pool = new NodePool<>();
+   /* spins before a reader waiting for a writer to finish with a node
+    yields, as in the spin locks */
+   private static final int SPINS_BEFORE_YIELD = 100;
+   /* lock-free copies tried before snapshot locks the head */
+   private static final int OPTIMISTIC_TRIES = 4;
+
+    public FineGrainedTree(){
+        this(LockKind.REENTRANT);
+    }
+    public FineGrainedTree(LockKind lockKind){
+        this.lockKind = lockKind;
+        headNode = new Node(null);
+    }
 
     public void add(T t) {
-        Node node = new Node(t);
+        LockStats.startOperation();
+        Node node = newNode(t);
         Node pred = headNode;
         Node curr ;
         pred.lock();
         try{
            if(pred.right == null){
+               beginWrite(pred);
                pred.right = node;
+               endWrite(pred);
            } else {
                curr = pred.right;
                curr.lock();
@@ -46,22 +139,28 @@ public class FineGrainedTree<T extends Comparable<T>> implements Sorted<T> {
                    while(true){
                        if (curr.item.compareTo(node.item) > 0){ /* newNode is smaller than the current node*/
                            if (curr.left == null){
+                               beginWrite(curr);
                                curr.left = node; /* left child node is null, add it there */
+                               endWrite(curr);
                                return;
                            } else {
                                pred.unlock();
                                pred = curr;
                                curr = curr.left;
+                               LockStats.step();
                                curr.lock();
                            }
                        } else { /* newNode is equal or greater than the current node */
                            if (curr.right == null){
+                               beginWrite(curr);
                                curr.right = node; /* right child node is null, add it there */
+                               endWrite(curr);
                                return;
                            } else {
                                pred.unlock();
                                pred = curr;
                                curr = curr.right;
+                               LockStats.step();
                                curr.lock();
                            }
                        }
@@ -76,30 +175,34 @@ public class FineGrainedTree<T extends Comparable<T>> implements Sorted<T> {
     }
 
     public void remove(T t) {
+        LockStats.startOperation();
         Node parent = headNode;
-        Node curr ;
+        Node curr, removed = null;
         parent.lock();
         try {
             if (parent.right != null){  /* tree is not empty */
                 curr = parent.right;
                 curr.lock();
                 try{
-                    while (curr != null){
-                        if (curr.item.compareTo(t) == 0) break;
-                        else{
-                            parent.unlock();
-                            parent = curr;
-                            curr = curr.item.compareTo(t) > 0 ? curr.left : curr.right;
-                            curr.lock();
-                        }
+                    while (curr.item.compareTo(t) != 0){
+                        Node next = curr.item.compareTo(t) > 0 ? curr.left : curr.right;
+                        if (next == null) break; /* t is not in the tree */
+                        parent.unlock();
+                        parent = curr;
+                        curr = next;
+                        LockStats.step();
+                        curr.lock();
                     }
-                    if (curr != null) {    /* node is in the tree */
-                        if(isLeaf(curr))   /* node is a leaf */
+                    if (curr.item.compareTo(t) == 0) {    /* node is in the tree */
+                        if(isLeaf(curr)) {  /* node is a leaf */
                             removeLeaf(curr,parent);
-                        else if (has2Child(curr)) /* node with 2 children */
+                            removed = curr;
+                        } else if (has2Child(curr)) /* node with 2 children */
                             remove2Child(curr);
-                        else
+                        else {
                             remove1Child(curr,parent); /* node with 1 child */
+                            removed = curr;
+                        }
                     }
                 } finally {
                     curr.unlock();
@@ -109,13 +212,115 @@ public class FineGrainedTree<T extends Comparable<T>> implements Sorted<T> {
         } finally {
             parent.unlock();
         }
+        if (removed != null)
+            pool.retire(removed);
+    }
+
+    /**
+     * Builds a balanced tree from the sorted items, with fork/join over
+     * subranges. Adds them one by one if the tree is not empty.
+     */
+    @Override
+    public void bulkLoad(T[] items) {
+        headNode.lock();
+        try {
+            if (headNode.right == null){
+                Node root = new BuildTask(items, 0, items.length).invoke();
+                beginWrite(headNode);
+                headNode.right = root;
+                endWrite(headNode);
+                return;
+            }
+        } finally {
+            headNode.unlock();
+        }
+        for (T t : items)
+            add(t);
+    }
+
+    /**
+     * Searches without locks, reading every node on the path between two
+     * reads of its version. Nodes are marked before they are unlinked, and
+     * after every writer on it finished, an unmarked node is in the tree, so a
+     * match is final. A miss is only final if no node on the path changed
+     * since it was read, since a removal can move an item up the path.
+     * Otherwise the search goes on from the first node that changed, and
+     * backs up to the parent of a node that was unlinked meanwhile.
+     */
+    @Override
+    public boolean contains(T t) {
+        pool.enter();
+        try {
+            Reads path = new Reads();
+            Node curr = headNode;
+            while (true){
+                int version = stableVersion(curr);
+                int cmp = curr == headNode ? -1 : curr.item.compareTo(t);
+                Node next = cmp > 0 ? curr.left : curr.right;
+                boolean marked = curr.marked;
+                if (curr.version != version)
+                    continue; /* changed while it was read, read it again */
+                if (marked){
+                    curr = path.pop();
+                    continue;
+                }
+                if (cmp == 0)
+                    return true;
+                path.add(curr, version);
+                if (next != null){
+                    curr = next;
+                    continue;
+                }
+                int changed = path.firstChanged();
+                if (changed == path.size)
+                    return false;
+                curr = path.nodes[changed];
+                path.size = changed;
+            }
+        } finally {
+            pool.exit();
+        }
     }
 
     public ArrayList<T> toArrayList() {
-        ArrayList<T> list = new ArrayList<>();
-        //inOrderAddToList(headNode.right,list);
-        inOrderAddMorris(list);
-        return list;
+        return snapshot();
+    }
+
+    /**
+     * Copies the tree without locks, reading every node between two reads of
+     * its version, and checks at the end that none of the nodes changed since.
+     * The copy is then the tree as it was at one moment. A write to any node
+     * already copied spoils the copy, so a large tree under steady writing
+     * may never be copied this way. After a few tries, the head is locked:
+     * that keeps out new adds and removes, and the adds and removes already
+     * past the head each change their nodes in one go. So the copy fails at
+     * most once per writer in the tree, and writers wait for no more than
+     * those copies.
+     */
+    @Override
+    public ArrayList<T> snapshot() {
+        pool.enter();
+        try {
+            ArrayList<T> list = new ArrayList<>();
+            for (int i = 0; i < OPTIMISTIC_TRIES; i++){
+                if (tryCopy(list))
+                    return list;
+                list.clear();
+                Thread.yield();
+            }
+            headNode.lock();
+            try {
+                while (!tryCopy(list)){
+                    list.clear();
+                    Thread.yield();
+                }
+                return list;
+            } finally {
+                headNode.unlock();
+            }
+        } finally {
+            pool.exit();
+        }
     }
 
     /**
@@ -124,13 +329,17 @@ public class FineGrainedTree<T extends Comparable<T>> implements Sorted<T> {
      * @param parent parent node, pointing to the node to be deleted
      */
     private void removeLeaf(Node curr, Node parent){
+        beginWrite(parent);
+        beginWrite(curr);
+        curr.marked = true;
         if (parent == headNode) /* curr is the only node in the tree */
             parent.right = null;
         else if (parent.left == curr)
             parent.left = null;
         else
             parent.right = null;
-
+        endWrite(curr);
+        endWrite(parent);
     }
 
     /**
@@ -139,40 +348,135 @@ public class FineGrainedTree<T extends Comparable<T>> implements Sorted<T> {
      * @param parent parent node, pointing to curr
      */
     private void remove1Child(Node curr, Node parent){
+        beginWrite(parent);
+        beginWrite(curr);
+        curr.marked = true;
         if (curr == headNode.right)
             headNode.right = getChild(headNode.right);
         else if(parent.left == curr)
             parent.left = getChild(curr);
         else
             parent.right = getChild(curr);
+        endWrite(curr);
+        endWrite(parent);
     }
 
     /**
      * This method is used to remove a node that has 2 child nodes,
      * by copying its successor's value, and removing that node.
-     * @param curr the node to be removed
+     * The path to the successor is locked hand-over-hand, so threads that
+     * passed curr before it was locked are either ahead of us or out of the way.
+     * @param curr the locked node to be removed
      */
     private void remove2Child(Node curr){
         Node parent = curr;
 
         Node successor = curr.right;
+        successor.lock();
         if ( successor.left == null ){ /* right child node is the successor */
+            beginWrite(curr);
+            beginWrite(successor);
+            successor.marked = true;
             curr.item = successor.item;
             curr.right = successor.right; /* either a child node or null */
+            endWrite(successor);
+            endWrite(curr);
+            successor.unlock();
+            pool.retire(successor);
             return;
         }
         while ( successor.left != null ) /* right child node was not the successor. get the MIN of the subtree */
         {
+            Node next = successor.left;
+            LockStats.step();
+            next.lock();
+            if (parent != curr)
+                parent.unlock();
             parent = successor;
-            successor = successor.left;
+            successor = next;
         }
+        beginWrite(curr);
+        beginWrite(parent);
+        beginWrite(successor);
+        successor.marked = true;
         curr.item = successor.item;
         parent.left = successor.right; /* parent node points to successor's right child */
+        endWrite(successor);
+        endWrite(parent);
+        endWrite(curr);
+        successor.unlock();
+        parent.unlock();
+        pool.retire(successor);
+    }
+
+
+
+
+    /**
+     * This method makes the version of a node odd, before the node is changed.
+     * @param node the locked node
+     */
+    private void beginWrite(Node node){
+        node.version++;
+    }
 
+    /**
+     * This method makes the version of a node even again, after the node was
+     * changed.
+     * @param node the locked node
+     */
+    private void endWrite(Node node){
+        node.version++;
     }
 
+    /**
+     * This method waits until no writer is changing a node.
+     * @param node the node about to be read
+     * @return the even version of the node
+     */
+    private int stableVersion(Node node){
+        int version;
+        for (int spins = 1; ((version = node.version) & 1) != 0; spins++){
+            if (spins % SPINS_BEFORE_YIELD == 0)
+                Thread.yield();
+            else
+                Thread.onSpinWait();
+        }
+        return version;
+    }
 
+    /**
+     * This method builds a balanced tree from a sorted range of items.
+     * @param items the sorted items
+     * @param from the first item of the range
+     * @param to the item after the last one of the range
+     * @return the root of the tree, null for an empty range
+     */
+    private Node build(T[] items, int from, int to){
+        if (from >= to)
+            return null;
+        int mid = (from + to) >>> 1;
+        Node node = new Node(items[mid]);
+        node.left = build(items, from, mid);
+        node.right = build(items, mid + 1, to);
+        return node;
+    }
 
+    /**
+     * This method takes a node from the pool, or allocates one if the pool is
+     * empty.
+     * @param t the item of the node
+     * @return an unlinked node holding t
+     */
+    private Node newNode(T t){
+        Node node = pool.get();
+        if (node == null)
+            return new Node(t);
+        node.item = t;
+        node.left = node.right = null;
+        node.marked = false;
+        return node;
+    }
 
     /**
      * this method gets the child node of the current
@@ -191,38 +495,43 @@ public class FineGrainedTree<T extends Comparable<T>> implements Sorted<T> {
     }
 
     /**
-     * This method adds all of the elements in the tree to the arrayList,
-     * using Morris in-order traversal algorithm, which is iterative, and does not
-     * use stacks.
-     * source: en.wikipedia.org/wiki/Threaded_binary_tree
-     *
+     * This method copies the tree in-order without locking, and checks that
+     * none of the nodes it read changed since. The nodes read so far are also
+     * checked every time their number doubles, since a changing tree can send
+     * the copy around in circles.
      * @param list An ArrayList where tree elements are added to
+     * @return whether the list holds the tree as it was at one moment
      */
-    private void inOrderAddMorris(ArrayList<T> list){
-        if (headNode.right == null)
-            return;
-        Node curr, pred;
-        curr = headNode.right;
-        while (curr != null){
-            if (curr.left == null){
-                list.add(curr.item);
-                curr = curr.right;
+    private boolean tryCopy(ArrayList<T> list){
+        Reads reads = new Reads();
+        ArrayList<Node> stack = new ArrayList<>();
+        int check = Reads.INITIAL;
+        reads.add(headNode, stableVersion(headNode));
+        Node curr = headNode.right;
+        while (curr != null || !stack.isEmpty()){
+            while (curr != null){
+                reads.add(curr, stableVersion(curr));
+                if (curr.marked)
+                    return false;
+                stack.add(curr);
+                curr = curr.left;
             }
-            else {
-                pred = curr.left;
-                while (pred.right != null && pred.right != curr)
-                    pred = pred.right;
-                if (pred.right == null){
-                    pred.right = curr;
-                    curr = curr.left;
-                }
-                else {
-                    pred.right = null;
-                    list.add(curr.item);
-                    curr = curr.right;
-                }
+            curr = stack.remove(stack.size() - 1);
+            reads.add(curr, stableVersion(curr));
+            list.add(curr.item);
+            curr = curr.right;
+            if (reads.size >= check){
+                if (reads.firstChanged() != reads.size)
+                    return false;
+                check *= 2;
             }
         }
+        return reads.firstChanged() == reads.size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newNodes(int length){
+        return (Node[]) new FineGrainedTree<?>.Node[length];
     }
 
 
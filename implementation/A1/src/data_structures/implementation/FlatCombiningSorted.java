@@ -0,0 +1,169 @@
+package data_structures.implementation;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import data_structures.Sorted;
+
+/**
+ * Flat combining around any {@link Sorted}: a thread publishes its add or
+ * remove in its own record, and whichever thread gets the combiner lock applies
+ * the pending operations of all threads in one pass, while the others spin on
+ * their own record. The lock changes hands once per pass instead of once per
+ * operation, and the data structure stays in the cache of the combiner.
+ *
+ * Only add and remove are combined. contains goes straight to the data
+ * structure, which can be searched while the combiner changes it; the other
+ * methods lock out the combiner and call the data structure directly.
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class FlatCombiningSorted<T extends Comparable<T>> implements Sorted<T> {
+    private static final int NONE = 0;
+    private static final int ADD = 1;
+    private static final int REMOVE = 2;
+    /* spins before a waiting thread yields, as in the spin locks */
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    private class Record{
+        volatile Thread owner;
+        /* NONE when there is nothing to do, written after item */
+        volatile int op = NONE;
+        T item;
+
+        public Record(Thread owner){
+            this.owner = owner;
+        }
+    }
+
+    private final Sorted<T> sorted;
+    private final AtomicBoolean combining = new AtomicBoolean(false);
+    /* copy on write, only registering threads change it */
+    private volatile ArrayList<Record> records = new ArrayList<>();
+    private final ThreadLocal<Record> myRecord = ThreadLocal.withInitial(this::register);
+
+    /**
+     * @param sorted the data structure the operations are applied to, only
+     *            used through this object from now on
+     */
+    public FlatCombiningSorted(Sorted<T> sorted){
+        this.sorted = sorted;
+    }
+
+    public void add(T t) {
+        execute(ADD, t);
+    }
+
+    public void remove(T t) {
+        execute(REMOVE, t);
+    }
+
+    @Override
+    public boolean contains(T t) {
+        return sorted.contains(t);
+    }
+
+    @Override
+    public void bulkLoad(T[] items) {
+        lock();
+        try {
+            sorted.bulkLoad(items);
+        } finally {
+            combining.set(false);
+        }
+    }
+
+    public ArrayList<T> toArrayList() {
+        lock();
+        try {
+            return sorted.toArrayList();
+        } finally {
+            combining.set(false);
+        }
+    }
+
+    @Override
+    public ArrayList<T> snapshot() {
+        /* with the combiner locked out, nobody changes the data structure */
+        return toArrayList();
+    }
+
+    /**
+     * This method publishes an operation, and waits until it was applied,
+     * either by a combiner or by this thread becoming the combiner.
+     * @param op ADD or REMOVE
+     * @param t the item
+     */
+    private void execute(int op, T t){
+        Record record = myRecord.get();
+        record.item = t;
+        record.op = op;
+        int spins = 0;
+        while (true){
+            if (!combining.get() && combining.compareAndSet(false, true)){
+                try {
+                    combine();
+                } finally {
+                    combining.set(false);
+                }
+                return; /* our own record was in the pass */
+            }
+            if (record.op == NONE)
+                return;
+            if (++spins % SPINS_BEFORE_YIELD == 0)
+                Thread.yield();
+            else
+                Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * This method applies the pending operations of all threads. Only called
+     * by the combiner.
+     */
+    private void combine(){
+        for (Record record : records){
+            int op = record.op;
+            if (op == ADD)
+                sorted.add(record.item);
+            else if (op == REMOVE)
+                sorted.remove(record.item);
+            else
+                continue;
+            record.item = null;
+            record.op = NONE;
+        }
+    }
+
+    /* waits for the combiner lock, for the operations that are not combined */
+    private void lock(){
+        int spins = 0;
+        while (!combining.compareAndSet(false, true)){
+            if (++spins % SPINS_BEFORE_YIELD == 0)
+                Thread.yield();
+            else
+                Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * This method gives the calling thread a record, preferably one whose
+     * thread has finished.
+     * @return the record of the calling thread
+     */
+    private synchronized Record register(){
+        Thread me = Thread.currentThread();
+        for (Record record : records){
+            if (!record.owner.isAlive()){
+                record.owner = me;
+                return record;
+            }
+        }
+        Record record = new Record(me);
+        ArrayList<Record> grown = new ArrayList<>(records);
+        grown.add(record);
+        records = grown;
+        return record;
+    }
+}
@@ -0,0 +1,136 @@
+package data_structures.implementation;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import data_structures.IntSorted;
+
+/**
+ * {@link LazyList} specialized for <code>int</code> items: the same lazy
+ * synchronization, but nodes hold the item unboxed and comparisons are
+ * plain integer comparisons.
+ */
+public class IntLazyList implements IntSorted {
+    private class Node{
+        int item;
+        volatile Node next;
+        volatile boolean marked;
+        Lock lock;
+
+        public Node(int t){
+            this.item = t;
+            this.next = null;
+            this.marked = false;
+            this.lock = new ReentrantLock();
+        }
+        public void lock(){
+            this.lock.lock();
+        }
+        public void unlock(){
+            this.lock.unlock();
+        }
+
+    }
+    /* head and tail are sentinels, their item is never looked at */
+    private final Node head = new Node(0);
+    private final Node tail = new Node(0);
+    public IntLazyList(){
+        head.next = tail;
+    }
+
+    public void add(int t) {
+        while (true){
+            Node pred = head;
+            Node curr = pred.next;
+            /* equal items go after the existing ones */
+            while (curr != tail && curr.item <= t){
+                pred = curr;
+                curr = curr.next;
+            }
+            pred.lock();
+            try {
+                curr.lock();
+                try {
+                    if (validate(pred, curr)){
+                        Node node = new Node(t);
+                        node.next = curr;
+                        pred.next = node;
+                        return;
+                    }
+                } finally {
+                    curr.unlock();
+                }
+            } finally {
+                pred.unlock();
+            }
+        }
+    }
+
+    public void remove(int t) {
+        while (true){
+            Node pred = head;
+            Node curr = pred.next;
+            while (curr != tail && curr.item < t){
+                pred = curr;
+                curr = curr.next;
+            }
+            pred.lock();
+            try {
+                curr.lock();
+                try {
+                    if (validate(pred, curr)){
+                        if (curr != tail && curr.item == t){
+                            curr.marked = true; /* logical removal */
+                            pred.next = curr.next; /* physical removal */
+                        }
+                        return;
+                    }
+                } finally {
+                    curr.unlock();
+                }
+            } finally {
+                pred.unlock();
+            }
+        }
+    }
+
+    /* wait-free, as in LazyList */
+    public boolean contains(int t) {
+        Node curr = head.next;
+        while (curr != tail && curr.item < t)
+            curr = curr.next;
+        while (curr != tail && curr.item == t){
+            if (!curr.marked)
+                return true;
+            curr = curr.next;
+        }
+        return false;
+    }
+
+    public int[] toIntArray() {
+        int[] result = new int[16];
+        int size = 0;
+        Node temp = head.next;
+        while (temp != tail){
+            if (!temp.marked){
+                if (size == result.length)
+                    result = Arrays.copyOf(result, 2 * size);
+                result[size++] = temp.item;
+            }
+            temp = temp.next;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Checks, with both nodes locked, that pred and curr are still in the list
+     * and adjacent.
+     * @param pred the locked predecessor
+     * @param curr the locked successor
+     * @return whether the window found by the traversal is still valid
+     */
+    private boolean validate(Node pred, Node curr){
+        return !pred.marked && !curr.marked && pred.next == curr;
+    }
+}
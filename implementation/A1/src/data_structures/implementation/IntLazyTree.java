@@ -0,0 +1,181 @@
+package data_structures.implementation;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import data_structures.IntSorted;
+
+/**
+ * {@link LazyTree} specialized for <code>int</code> items: the same lazy
+ * synchronization, but nodes hold the item unboxed and comparisons are
+ * plain integer comparisons.
+ */
+public class IntLazyTree implements IntSorted {
+    private class Node{
+        int item;
+        volatile Node left, right;
+        /* removed from the set, but possibly still routing searches */
+        volatile boolean deleted;
+        /* unlinked from the tree, only set together with deleted */
+        volatile boolean marked;
+        Lock lock;
+
+        public Node(int t){
+            this.item = t;
+            this.left = this.right = null;
+            this.deleted = this.marked = false;
+            this.lock = new ReentrantLock();
+        }
+        public void lock(){
+            this.lock.lock();
+        }
+        public void unlock(){
+            this.lock.unlock();
+        }
+
+    }
+    /*headNode's right child points to the root of the tree. it'd be NULL if tree is empty
+     the left child is always NULL*/
+    private final Node headNode = new Node(0);
+
+    public void add(int t) {
+        while (true){
+            Node parent = headNode;
+            Node curr = headNode.right;
+            boolean left = false;
+            while (curr != null){
+                if (curr.item == t && curr.deleted && revive(curr))
+                    return;
+                parent = curr;
+                left = curr.item > t; /* equal items go to the right */
+                curr = left ? curr.left : curr.right;
+            }
+            parent.lock();
+            try {
+                /* parent still in the tree, and nobody added there meanwhile */
+                if (!parent.marked && (left ? parent.left : parent.right) == null){
+                    Node node = new Node(t);
+                    if (left)
+                        parent.left = node;
+                    else
+                        parent.right = node;
+                    return;
+                }
+            } finally {
+                parent.unlock();
+            }
+        }
+    }
+
+    public void remove(int t) {
+        while (true){
+            Node parent = headNode;
+            Node curr = headNode.right;
+            while (curr != null){
+                if (curr.item == t && !curr.deleted)
+                    break;
+                parent = curr;
+                curr = curr.item > t ? curr.left : curr.right;
+            }
+            if (curr == null)
+                return; /* not present */
+            parent.lock();
+            try {
+                curr.lock();
+                try {
+                    if (validate(parent, curr)){
+                        curr.deleted = true; /* logical removal */
+                        if (curr.left == null || curr.right == null){
+                            curr.marked = true;
+                            unlink(curr, parent);
+                        }
+                        return;
+                    }
+                } finally {
+                    curr.unlock();
+                }
+            } finally {
+                parent.unlock();
+            }
+        }
+    }
+
+    /* wait-free, as in LazyTree */
+    public boolean contains(int t) {
+        Node curr = headNode.right;
+        while (curr != null){
+            if (curr.item == t && !curr.deleted)
+                return true;
+            curr = curr.item > t ? curr.left : curr.right;
+        }
+        return false;
+    }
+
+    public int[] toIntArray() {
+        int[] result = new int[16];
+        int size = 0;
+        Node[] stack = new Node[16];
+        int depth = 0;
+        Node curr = headNode.right;
+        while (curr != null || depth > 0){
+            while (curr != null){
+                if (depth == stack.length)
+                    stack = Arrays.copyOf(stack, 2 * depth);
+                stack[depth++] = curr;
+                curr = curr.left;
+            }
+            curr = stack[--depth];
+            if (!curr.deleted){
+                if (size == result.length)
+                    result = Arrays.copyOf(result, 2 * size);
+                result[size++] = curr.item;
+            }
+            curr = curr.right;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * This method tries to bring back a node that was only logically removed.
+     * @param node the deleted node holding an item equal to the one to add
+     * @return whether the node now represents the added item
+     */
+    private boolean revive(Node node){
+        node.lock();
+        try {
+            if (!node.marked && node.deleted){
+                node.deleted = false;
+                return true;
+            }
+            return false;
+        } finally {
+            node.unlock();
+        }
+    }
+
+    /**
+     * Checks, with both nodes locked, that parent and curr are still in the
+     * tree and linked, and that curr was not removed by someone else.
+     * @param parent the locked parent
+     * @param curr the locked node to be removed
+     * @return whether the nodes found by the search are still valid
+     */
+    private boolean validate(Node parent, Node curr){
+        return !parent.marked && !curr.deleted
+                && (parent.left == curr || parent.right == curr);
+    }
+
+    /**
+     * This method splices out a node which has at most 1 child.
+     * @param curr the node to be removed
+     * @param parent parent node, pointing to curr
+     */
+    private void unlink(Node curr, Node parent){
+        Node child = curr.left != null ? curr.left : curr.right;
+        if (parent.left == curr)
+            parent.left = child;
+        else
+            parent.right = child;
+    }
+}
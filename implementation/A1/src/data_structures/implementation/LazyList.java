@@ -0,0 +1,169 @@
+package data_structures.implementation;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import data_structures.Sorted;
+
+/**
+ * Sorted linked list using lazy synchronization: traversals do not take any
+ * locks, only pred and curr are locked once the position is found, and then
+ * validated. Removal first marks a node (logical delete) and then unlinks it.
+ * Unlinked nodes are retired to a {@link NodePool} and reused by later adds.
+ */
+public class LazyList<T extends Comparable<T>> implements Sorted<T> {
+    private class Node{
+        T item;
+        volatile Node next;
+        volatile boolean marked;
+        Lock lock;
+
+        public Node(T t){
+            this.item = t;
+            this.next = null;
+            this.marked = false;
+            this.lock = new ReentrantLock();
+        }
+        public void lock(){
+            this.lock.lock();
+        }
+        public void unlock(){
+            this.lock.unlock();
+        }
+
+    }
+    /* head and tail are sentinels, their item is never looked at */
+    private final Node head = new Node(null);
+    private final Node tail = new Node(null);
+    /* removed nodes, reused by add once no traversal can still be on them */
+    private final NodePool<Node> pool = new NodePool<>();
+    public LazyList(){
+        head.next = tail;
+    }
+
+    public void add(T t) {
+        pool.enter();
+        try {
+            while (true){
+                Node pred = head;
+                Node curr = pred.next;
+                /* equal items go after the existing ones */
+                while (curr != tail && curr.item.compareTo(t) <= 0){
+                    pred = curr;
+                    curr = curr.next;
+                }
+                pred.lock();
+                try {
+                    curr.lock();
+                    try {
+                        if (validate(pred, curr)){
+                            Node node = newNode(t);
+                            node.next = curr;
+                            pred.next = node;
+                            return;
+                        }
+                    } finally {
+                        curr.unlock();
+                    }
+                } finally {
+                    pred.unlock();
+                }
+            }
+        } finally {
+            pool.exit();
+        }
+    }
+
+    public void remove(T t) {
+        pool.enter();
+        try {
+            while (true){
+                Node pred = head;
+                Node curr = pred.next;
+                while (curr != tail && curr.item.compareTo(t) < 0){
+                    pred = curr;
+                    curr = curr.next;
+                }
+                pred.lock();
+                try {
+                    curr.lock();
+                    try {
+                        if (validate(pred, curr)){
+                            if (curr != tail && curr.item.compareTo(t) == 0){
+                                curr.marked = true; /* logical removal */
+                                pred.next = curr.next; /* physical removal */
+                                pool.retire(curr);
+                            }
+                            return;
+                        }
+                    } finally {
+                        curr.unlock();
+                    }
+                } finally {
+                    pred.unlock();
+                }
+            }
+        } finally {
+            pool.exit();
+        }
+    }
+
+    /* wait-free: no locks, no retries, only the marks are looked at */
+    @Override
+    public boolean contains(T t) {
+        pool.enter();
+        try {
+            Node curr = head.next;
+            while (curr != tail && curr.item.compareTo(t) < 0)
+                curr = curr.next;
+            /* one of several equal items may be marked, but not all of them */
+            while (curr != tail && curr.item.compareTo(t) == 0){
+                if (!curr.marked)
+                    return true;
+                curr = curr.next;
+            }
+            return false;
+        } finally {
+            pool.exit();
+        }
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        Node temp = head.next;
+        while (temp != tail){
+            if (!temp.marked)
+                list.add(temp.item);
+            temp = temp.next;
+        }
+        return list;
+    }
+
+    /**
+     * Checks, with both nodes locked, that pred and curr are still in the list
+     * and adjacent.
+     * @param pred the locked predecessor
+     * @param curr the locked successor
+     * @return whether the window found by the traversal is still valid
+     */
+    private boolean validate(Node pred, Node curr){
+        return !pred.marked && !curr.marked && pred.next == curr;
+    }
+
+    /**
+     * This method takes a node from the pool, or allocates one if the pool is
+     * empty.
+     * @param t the item of the node
+     * @return an unlinked, unmarked node holding t
+     */
+    private Node newNode(T t){
+        Node node = pool.get();
+        if (node == null)
+            return new Node(t);
+        node.item = t;
+        node.next = null;
+        node.marked = false;
+        return node;
+    }
+}
@@ -0,0 +1,184 @@
+package data_structures.implementation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import data_structures.Sorted;
+
+/**
+ * Binary search tree using lazy synchronization. Searches take no locks; an
+ * update locks only the parent (and the node itself for a removal) and then
+ * validates them. Nodes are never moved and items are never rewritten, so a
+ * search that is overtaken by a removal still ends up in the right place.
+ *
+ * A node with two children cannot be spliced out, so it is only marked as
+ * deleted and keeps serving as a routing node. Adding an equal item later
+ * revives it.
+ */
+public class LazyTree<T extends Comparable<T>> implements Sorted<T> {
+    private class Node{
+        T item;
+        volatile Node left, right;
+        /* removed from the set, but possibly still routing searches */
+        volatile boolean deleted;
+        /* unlinked from the tree, only set together with deleted */
+        volatile boolean marked;
+        Lock lock;
+
+        public Node(T t){
+            this.item = t;
+            this.left = this.right = null;
+            this.deleted = this.marked = false;
+            this.lock = new ReentrantLock();
+        }
+        public void lock(){
+            this.lock.lock();
+        }
+        public void unlock(){
+            this.lock.unlock();
+        }
+
+    }
+    /*headNode's right child points to the root of the tree. it'd be NULL if tree is empty
+     the left child is always NULL*/
+    private final Node headNode = new Node(null);
+
+    public void add(T t) {
+        while (true){
+            Node parent = headNode;
+            Node curr = headNode.right;
+            boolean left = false;
+            while (curr != null){
+                int cmp = curr.item.compareTo(t);
+                if (cmp == 0 && curr.deleted && revive(curr))
+                    return;
+                parent = curr;
+                left = cmp > 0; /* equal items go to the right */
+                curr = left ? curr.left : curr.right;
+            }
+            parent.lock();
+            try {
+                /* parent still in the tree, and nobody added there meanwhile */
+                if (!parent.marked && (left ? parent.left : parent.right) == null){
+                    Node node = new Node(t);
+                    if (left)
+                        parent.left = node;
+                    else
+                        parent.right = node;
+                    return;
+                }
+            } finally {
+                parent.unlock();
+            }
+        }
+    }
+
+    public void remove(T t) {
+        while (true){
+            Node parent = headNode;
+            Node curr = headNode.right;
+            while (curr != null){
+                int cmp = curr.item.compareTo(t);
+                if (cmp == 0 && !curr.deleted)
+                    break;
+                parent = curr;
+                curr = cmp > 0 ? curr.left : curr.right;
+            }
+            if (curr == null)
+                return; /* not present */
+            parent.lock();
+            try {
+                curr.lock();
+                try {
+                    if (validate(parent, curr)){
+                        curr.deleted = true; /* logical removal */
+                        if (curr.left == null || curr.right == null){
+                            curr.marked = true;
+                            unlink(curr, parent);
+                        }
+                        return;
+                    }
+                } finally {
+                    curr.unlock();
+                }
+            } finally {
+                parent.unlock();
+            }
+        }
+    }
+
+    /* wait-free: the same search as remove, without the locks */
+    @Override
+    public boolean contains(T t) {
+        Node curr = headNode.right;
+        while (curr != null){
+            int cmp = curr.item.compareTo(t);
+            if (cmp == 0 && !curr.deleted)
+                return true;
+            curr = cmp > 0 ? curr.left : curr.right;
+        }
+        return false;
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node curr = headNode.right;
+        while (curr != null || !stack.isEmpty()){
+            while (curr != null){
+                stack.push(curr);
+                curr = curr.left;
+            }
+            curr = stack.pop();
+            if (!curr.deleted)
+                list.add(curr.item);
+            curr = curr.right;
+        }
+        return list;
+    }
+
+    /**
+     * This method tries to bring back a node that was only logically removed.
+     * @param node the deleted node holding an item equal to the one to add
+     * @return whether the node now represents the added item
+     */
+    private boolean revive(Node node){
+        node.lock();
+        try {
+            if (!node.marked && node.deleted){
+                node.deleted = false;
+                return true;
+            }
+            return false;
+        } finally {
+            node.unlock();
+        }
+    }
+
+    /**
+     * Checks, with both nodes locked, that parent and curr are still in the
+     * tree and linked, and that curr was not removed by someone else.
+     * @param parent the locked parent
+     * @param curr the locked node to be removed
+     * @return whether the nodes found by the search are still valid
+     */
+    private boolean validate(Node parent, Node curr){
+        return !parent.marked && !curr.deleted
+                && (parent.left == curr || parent.right == curr);
+    }
+
+    /**
+     * This method splices out a node which has at most 1 child.
+     * @param curr the node to be removed
+     * @param parent parent node, pointing to curr
+     */
+    private void unlink(Node curr, Node parent){
+        Node child = curr.left != null ? curr.left : curr.right;
+        if (parent.left == curr)
+            parent.left = child;
+        else
+            parent.right = child;
+    }
+}
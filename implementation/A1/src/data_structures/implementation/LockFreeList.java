@@ -0,0 +1,127 @@
+package data_structures.implementation;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+import data_structures.Sorted;
+
+/**
+ * Non-blocking sorted linked list (Harris and Michael). The mark bit of a
+ * node's next reference means the node itself is logically removed; marked
+ * nodes are physically unlinked by whichever thread runs into them.
+ */
+public class LockFreeList<T extends Comparable<T>> implements Sorted<T> {
+    private class Node{
+        T item;
+        AtomicMarkableReference<Node> next;
+
+        public Node(T t, Node next){
+            this.item = t;
+            this.next = new AtomicMarkableReference<Node>(next, false);
+        }
+    }
+
+    /* result of find(): pred.next was curr when it was read */
+    private class Window{
+        Node pred, curr;
+
+        public Window(Node pred, Node curr){
+            this.pred = pred;
+            this.curr = curr;
+        }
+    }
+
+    /* head and tail are sentinels, their item is never looked at */
+    private final Node tail = new Node(null, null);
+    private final Node head = new Node(null, tail);
+
+    public void add(T t) {
+        while (true){
+            /* equal items go after the existing ones */
+            Window window = find(t, true);
+            Node node = new Node(t, window.curr);
+            if (window.pred.next.compareAndSet(window.curr, node, false, false))
+                return;
+        }
+    }
+
+    public void remove(T t) {
+        while (true){
+            Window window = find(t, false);
+            Node curr = window.curr;
+            if (curr == tail || curr.item.compareTo(t) != 0)
+                return; /* not present */
+            Node succ = curr.next.getReference();
+            /* logical removal; if it fails, someone else changed curr, retry */
+            if (curr.next.compareAndSet(succ, succ, false, true)){
+                /* physical removal, if this fails a later find() does it */
+                window.pred.next.compareAndSet(curr, succ, false, false);
+                return;
+            }
+        }
+    }
+
+    /* wait-free: unlike find(), marked nodes are passed, not unlinked */
+    @Override
+    public boolean contains(T t) {
+        boolean[] marked = {false};
+        Node curr = head.next.getReference();
+        while (curr != tail && curr.item.compareTo(t) < 0)
+            curr = curr.next.getReference();
+        while (curr != tail && curr.item.compareTo(t) == 0){
+            Node succ = curr.next.get(marked);
+            if (!marked[0])
+                return true;
+            curr = succ;
+        }
+        return false;
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        boolean[] marked = {false};
+        Node temp = head.next.getReference();
+        while (temp != tail){
+            Node next = temp.next.get(marked);
+            if (!marked[0])
+                list.add(temp.item);
+            temp = next;
+        }
+        return list;
+    }
+
+    /**
+     * This method finds the window in which t belongs, unlinking the marked
+     * nodes it passes on the way.
+     * @param t the item to look for
+     * @param after if set, curr is the first node greater than t, otherwise
+     *              it is the first node greater than or equal to t
+     * @return pred and curr, with curr unmarked when it was read
+     */
+    private Window find(T t, boolean after){
+        boolean[] marked = {false};
+        retry:
+        while (true){
+            Node pred = head;
+            Node curr = pred.next.getReference();
+            while (true){
+                if (curr == tail)
+                    return new Window(pred, curr);
+                Node succ = curr.next.get(marked);
+                while (marked[0]){ /* curr is logically removed, unlink it */
+                    if (!pred.next.compareAndSet(curr, succ, false, false))
+                        continue retry;
+                    curr = succ;
+                    if (curr == tail)
+                        return new Window(pred, curr);
+                    succ = curr.next.get(marked);
+                }
+                int cmp = curr.item.compareTo(t);
+                if (after ? cmp > 0 : cmp >= 0)
+                    return new Window(pred, curr);
+                pred = curr;
+                curr = succ;
+            }
+        }
+    }
+}
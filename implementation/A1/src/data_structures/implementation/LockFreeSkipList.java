@@ -0,0 +1,199 @@
+package data_structures.implementation;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+import data_structures.Sorted;
+
+/**
+ * Lock-free skip list (Herlihy and Shavit, ch. 14), adapted to keep duplicate
+ * items. A node is in the set iff it is reachable and its bottom-level next
+ * reference is unmarked; the upper levels are only shortcuts.
+ */
+public class LockFreeSkipList<T extends Comparable<T>> implements Sorted<T> {
+    /* 2^MAX_LEVEL items keep the expected search cost logarithmic */
+    private static final int MAX_LEVEL = 24;
+
+    private class Node{
+        T item;
+        int topLevel;
+        AtomicMarkableReference<Node>[] next;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public Node(T t, int topLevel){
+            this.item = t;
+            this.topLevel = topLevel;
+            this.next = (AtomicMarkableReference<Node>[]) new AtomicMarkableReference[topLevel + 1];
+            for (int i = 0; i <= topLevel; i++)
+                next[i] = new AtomicMarkableReference<Node>(null, false);
+        }
+    }
+
+    /* head and tail are sentinels, their item is never looked at */
+    private final Node head = new Node(null, MAX_LEVEL);
+    private final Node tail = new Node(null, MAX_LEVEL);
+    public LockFreeSkipList(){
+        for (int i = 0; i <= MAX_LEVEL; i++)
+            head.next[i].set(tail, false);
+    }
+
+    public void add(T t) {
+        int topLevel = randomLevel();
+        Node[] preds = newNodes();
+        Node[] succs = newNodes();
+        boolean[] marked = {false};
+        Node node = new Node(t, topLevel);
+        while (true){
+            /* equal items go after the existing ones */
+            find(t, true, preds, succs);
+            for (int level = 0; level <= topLevel; level++)
+                node.next[level].set(succs[level], false);
+            /* linking the bottom level is what adds the item */
+            if (!preds[0].next[0].compareAndSet(succs[0], node, false, false))
+                continue;
+            for (int level = 1; level <= topLevel; level++){
+                while (true){
+                    Node succ = node.next[level].get(marked);
+                    if (marked[0])
+                        return; /* already being removed, stop linking it */
+                    if (succ == succs[level]
+                            || node.next[level].compareAndSet(succ, succs[level], false, false)){
+                        if (preds[level].next[level].compareAndSet(succs[level], node, false, false))
+                            break;
+                        find(t, true, preds, succs);
+                    }
+                }
+            }
+            return;
+        }
+    }
+
+    public void remove(T t) {
+        Node[] preds = newNodes();
+        Node[] succs = newNodes();
+        boolean[] marked = {false};
+        while (true){
+            find(t, false, preds, succs);
+            Node victim = succs[0];
+            if (victim == tail || victim.item.compareTo(t) != 0)
+                return; /* not present */
+            /* mark the upper levels top-down, they are only shortcuts */
+            for (int level = victim.topLevel; level >= 1; level--){
+                Node succ = victim.next[level].get(marked);
+                while (!marked[0]){
+                    victim.next[level].compareAndSet(succ, succ, false, true);
+                    succ = victim.next[level].get(marked);
+                }
+            }
+            /* whoever marks the bottom level removes the item */
+            Node succ = victim.next[0].get(marked);
+            while (!marked[0]){
+                if (victim.next[0].compareAndSet(succ, succ, false, true)){
+                    find(t, false, preds, succs); /* unlinks the victim */
+                    return;
+                }
+                succ = victim.next[0].get(marked);
+            }
+            /* another thread removed this instance first, look for another */
+        }
+    }
+
+    /* wait-free, after Herlihy and Shavit: marked nodes are passed, not unlinked */
+    @Override
+    public boolean contains(T t) {
+        boolean[] marked = {false};
+        Node pred = head, curr = null;
+        for (int level = MAX_LEVEL; level >= 0; level--){
+            curr = pred.next[level].getReference();
+            while (curr != tail){
+                Node succ = curr.next[level].get(marked);
+                if (!marked[0] && curr.item.compareTo(t) >= 0)
+                    break;
+                if (!marked[0])
+                    pred = curr;
+                curr = succ;
+            }
+        }
+        /* curr is the first node at the bottom that is not smaller than t */
+        while (curr != tail && curr.item.compareTo(t) == 0){
+            Node succ = curr.next[0].get(marked);
+            if (!marked[0])
+                return true;
+            curr = succ;
+        }
+        return false;
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        boolean[] marked = {false};
+        Node temp = head.next[0].getReference();
+        while (temp != tail){
+            Node next = temp.next[0].get(marked);
+            if (!marked[0])
+                list.add(temp.item);
+            temp = next;
+        }
+        return list;
+    }
+
+    /**
+     * This method fills preds and succs with the window for t at every level,
+     * unlinking the marked nodes it passes on the way.
+     * @param t the item to look for
+     * @param after if set, succs are the first nodes greater than t, otherwise
+     *              the first nodes greater than or equal to t
+     * @param preds filled with the predecessor at every level
+     * @param succs filled with the successor at every level
+     */
+    private void find(T t, boolean after, Node[] preds, Node[] succs){
+        boolean[] marked = {false};
+        retry:
+        while (true){
+            Node pred = head;
+            for (int level = MAX_LEVEL; level >= 0; level--){
+                Node curr = pred.next[level].getReference();
+                while (true){
+                    if (curr == tail)
+                        break;
+                    Node succ = curr.next[level].get(marked);
+                    while (marked[0]){ /* curr is removed, unlink it at this level */
+                        if (!pred.next[level].compareAndSet(curr, succ, false, false))
+                            continue retry;
+                        curr = succ;
+                        if (curr == tail)
+                            break;
+                        succ = curr.next[level].get(marked);
+                    }
+                    if (curr == tail)
+                        break;
+                    int cmp = curr.item.compareTo(t);
+                    if (after ? cmp > 0 : cmp >= 0)
+                        break;
+                    pred = curr;
+                    curr = succ;
+                }
+                preds[level] = pred;
+                succs[level] = curr;
+            }
+            return;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newNodes(){
+        return (Node[]) new LockFreeSkipList<?>.Node[MAX_LEVEL + 1];
+    }
+
+    /**
+     * Picks the top level of a new node, level i is used with probability
+     * 2^-(i+1).
+     * @return a level in [0, MAX_LEVEL]
+     */
+    private static int randomLevel(){
+        int bits = ThreadLocalRandom.current().nextInt();
+        int level = Integer.numberOfTrailingZeros(bits);
+        return Math.min(level, MAX_LEVEL);
+    }
+}
@@ -0,0 +1,265 @@
+package data_structures.implementation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import data_structures.Sorted;
+
+/**
+ * Non-blocking external (leaf-oriented) binary search tree, after Ellen,
+ * Fatourou, Ruppert and van Breugel, "Non-blocking Binary Search Trees"
+ * (PODC 2010). Items live in the leaves; internal nodes only route. An
+ * update first flags the internal node(s) it is going to change, and any
+ * thread that runs into a flag helps to finish that update.
+ *
+ * Routing needs distinct keys, so equal items share one leaf, which holds the
+ * number of copies. Leaves are immutable: adding or removing a duplicate
+ * swaps in a new leaf. toArrayList emits every copy.
+ */
+public class LockFreeTree<T extends Comparable<T>> implements Sorted<T> {
+    /* states of an Update */
+    private static final int CLEAN = 0;
+    private static final int IFLAG = 1;
+    private static final int DFLAG = 2;
+    private static final int MARK = 3;
+
+    private class Node{
+        T item;
+        /* 0 for a real item, 1 and 2 for the two sentinel keys, infinity1 < infinity2 */
+        int inf;
+        /* leaves only: number of copies of item */
+        int count;
+        /* internal nodes only */
+        AtomicReference<Node> left, right;
+        AtomicReference<Update> update;
+
+        /* leaf */
+        public Node(T t, int inf, int count){
+            this.item = t;
+            this.inf = inf;
+            this.count = count;
+        }
+        /* internal node, routing on the key of keyNode */
+        public Node(Node keyNode, Node left, Node right){
+            this.item = keyNode.item;
+            this.inf = keyNode.inf;
+            this.left = new AtomicReference<Node>(left);
+            this.right = new AtomicReference<Node>(right);
+            this.update = new AtomicReference<Update>(new Update(CLEAN, null));
+        }
+        public boolean isLeaf(){
+            return update == null;
+        }
+    }
+
+    /* the state of an internal node, replaced as a whole by CAS */
+    private class Update{
+        int state;
+        Info info;
+
+        public Update(int state, Info info){
+            this.state = state;
+            this.info = info;
+        }
+    }
+
+    /* describes an update in progress, so that others can finish it */
+    private class Info{
+        Node gp, p, l;
+        /* insert: the node replacing l under p */
+        Node replacement;
+        /* the updates of p and gp as seen by the search, before reading l */
+        Update pupdate, gpupdate;
+        /* the flag this update was announced with */
+        Update flag;
+    }
+
+    private final Node root = new Node(new Node(null, 2, 0),
+            new Node(null, 1, 0), new Node(null, 2, 0));
+
+    public void add(T t) {
+        while (true){
+            Info op = search(t);
+            if (op.pupdate.state != CLEAN){
+                help(op.pupdate);
+                continue;
+            }
+            Node l = op.l;
+            if (l.inf == 0 && l.item.compareTo(t) == 0){
+                op.replacement = new Node(l.item, 0, l.count + 1);
+            } else {
+                Node newLeaf = new Node(t, 0, 1);
+                /* l is copied, so a stale helper can never put it back */
+                Node sibling = new Node(l.item, l.inf, l.count);
+                if (compare(t, l) < 0)
+                    op.replacement = new Node(sibling, newLeaf, sibling);
+                else
+                    op.replacement = new Node(newLeaf, sibling, newLeaf);
+            }
+            if (flagAndReplace(op))
+                return;
+        }
+    }
+
+    public void remove(T t) {
+        while (true){
+            Info op = search(t);
+            Node l = op.l;
+            if (l.inf != 0 || l.item.compareTo(t) != 0)
+                return; /* not present */
+            if (op.gpupdate.state != CLEAN){
+                help(op.gpupdate);
+                continue;
+            }
+            if (op.pupdate.state != CLEAN){
+                help(op.pupdate);
+                continue;
+            }
+            if (l.count > 1){ /* drop one copy, the leaf stays */
+                op.replacement = new Node(l.item, 0, l.count - 1);
+                if (flagAndReplace(op))
+                    return;
+                continue;
+            }
+            op.flag = new Update(DFLAG, op);
+            if (op.gp.update.compareAndSet(op.gpupdate, op.flag)){
+                if (helpDelete(op))
+                    return;
+            } else {
+                help(op.gp.update.get());
+            }
+        }
+    }
+
+    /* wait-free: the leaf is immutable, so its count says it all */
+    @Override
+    public boolean contains(T t) {
+        Node l = root;
+        while (!l.isLeaf())
+            l = compare(t, l) < 0 ? l.left.get() : l.right.get();
+        return l.inf == 0 && l.item.compareTo(t) == 0;
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()){
+            Node curr = stack.pop();
+            if (curr.isLeaf()){
+                for (int i = 0; curr.inf == 0 && i < curr.count; i++)
+                    list.add(curr.item);
+            } else {
+                stack.push(curr.right.get());
+                stack.push(curr.left.get());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * This method walks down to the leaf where t is, or would be.
+     * @param t the item to look for
+     * @return the leaf, its parent and grandparent, and the update of the
+     *         parent as it was read before reading the leaf
+     */
+    private Info search(T t){
+        Info op = new Info();
+        Node l = root;
+        while (!l.isLeaf()){
+            op.gp = op.p;
+            op.gpupdate = op.pupdate;
+            op.p = l;
+            op.pupdate = l.update.get();
+            l = compare(t, l) < 0 ? l.left.get() : l.right.get();
+        }
+        op.l = l;
+        return op;
+    }
+
+    /**
+     * This method flags the parent and replaces the leaf under it, used both
+     * for inserting an internal node and for swapping a leaf.
+     * @param op the result of the search, with the replacement filled in
+     * @return whether the replacement happened
+     */
+    private boolean flagAndReplace(Info op){
+        op.flag = new Update(IFLAG, op);
+        if (op.p.update.compareAndSet(op.pupdate, op.flag)){
+            helpInsert(op);
+            return true;
+        }
+        help(op.p.update.get());
+        return false;
+    }
+
+    /**
+     * This method finishes whatever update is announced by the specified
+     * update.
+     * @param update the update of an internal node
+     */
+    private void help(Update update){
+        if (update.state == IFLAG)
+            helpInsert(update.info);
+        else if (update.state == MARK)
+            helpMarked(update.info);
+        else if (update.state == DFLAG)
+            helpDelete(update.info);
+    }
+
+    private void helpInsert(Info op){
+        casChild(op.p, op.l, op.replacement);
+        op.p.update.compareAndSet(op.flag, new Update(CLEAN, op));
+    }
+
+    /**
+     * This method tries to mark the parent of a leaf that is being removed.
+     * @param op the delete, flagged at the grandparent
+     * @return whether the delete went through; if not, the flag is removed
+     */
+    private boolean helpDelete(Info op){
+        op.p.update.compareAndSet(op.pupdate, new Update(MARK, op));
+        Update result = op.p.update.get();
+        if (result.state == MARK && result.info == op){
+            helpMarked(op);
+            return true;
+        }
+        help(result);
+        op.gp.update.compareAndSet(op.flag, new Update(CLEAN, op));
+        return false;
+    }
+
+    /**
+     * This method replaces the marked parent by the sibling of the removed
+     * leaf.
+     * @param op the delete, flagged at the grandparent and marked at the
+     *           parent
+     */
+    private void helpMarked(Info op){
+        Node other = op.p.right.get() == op.l ? op.p.left.get() : op.p.right.get();
+        casChild(op.gp, op.p, other);
+        op.gp.update.compareAndSet(op.flag, new Update(CLEAN, op));
+    }
+
+    private void casChild(Node parent, Node old, Node node){
+        if (compare(node, parent) < 0)
+            parent.left.compareAndSet(old, node);
+        else
+            parent.right.compareAndSet(old, node);
+    }
+
+    /**
+     * Compares an item to the key of a node, the sentinel keys are larger
+     * than any item.
+     */
+    private int compare(T t, Node node){
+        return node.inf > 0 ? -1 : t.compareTo(node.item);
+    }
+
+    private int compare(Node a, Node b){
+        if (a.inf != 0 || b.inf != 0)
+            return Integer.compare(a.inf, b.inf);
+        return a.item.compareTo(b.item);
+    }
+}
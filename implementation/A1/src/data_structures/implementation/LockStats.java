@@ -0,0 +1,200 @@
+package data_structures.implementation;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Opt-in counters for the lock based data structures: lock acquisitions, how
+ * many of them had to wait and for how long, and the number of nodes visited
+ * per operation, and how many of those a {@link FineGrainedList} finger saved.
+ * The head (or root, or only) lock of a data structure is
+ * counted apart from the other locks, to see whether it is the bottleneck.
+ *
+ * Enabled with <code>-Dsorted.stats=true</code>. Otherwise {@link #ENABLED}
+ * is a constant false, and the JIT compiles every call in here down to
+ * nothing, or to a plain <code>lock()</code>.
+ *
+ * Every thread counts in its own {@link Counters}, which are only summed when
+ * the counters are collected.
+ */
+public final class LockStats {
+    public static final boolean ENABLED = Boolean.getBoolean("sorted.stats");
+
+    /** The counters of one thread, or the sum of those of several. */
+    public static final class Counters {
+        long headAcquired, headContended, headBlockedNanos;
+        long nodeAcquired, nodeContended, nodeBlockedNanos;
+        long operations, steps, maxSteps;
+        /* operations that started at a finger, and the nodes that skipped */
+        long fingerStarts, skipped;
+        /* nodes visited by the current operation */
+        private long currentSteps;
+
+        /**
+         * Adds the specified counters to these.
+         *
+         * @param other
+         *            the counters to add
+         */
+        public void add(Counters other) {
+            headAcquired += other.headAcquired;
+            headContended += other.headContended;
+            headBlockedNanos += other.headBlockedNanos;
+            nodeAcquired += other.nodeAcquired;
+            nodeContended += other.nodeContended;
+            nodeBlockedNanos += other.nodeBlockedNanos;
+            operations += other.operations;
+            steps += other.steps;
+            maxSteps = Math.max(maxSteps, other.maxSteps);
+            fingerStarts += other.fingerStarts;
+            skipped += other.skipped;
+        }
+
+        private void reset() {
+            headAcquired = headContended = headBlockedNanos = 0;
+            nodeAcquired = nodeContended = nodeBlockedNanos = 0;
+            operations = steps = maxSteps = currentSteps = 0;
+            fingerStarts = skipped = 0;
+        }
+
+        @Override
+        public String toString() {
+            String result = String.format(
+                    "%d operations, traversal avg %.1f max %d nodes\n"
+                            + "  head/root lock: %s\n" + "  node locks:     %s",
+                    operations, operations == 0 ? 0.0 : (double) steps / operations,
+                    maxSteps, lockLine(headAcquired, headContended, headBlockedNanos),
+                    lockLine(nodeAcquired, nodeContended, nodeBlockedNanos));
+            if (fingerStarts > 0) {
+                result += String.format(
+                        "\n  fingers:        %d starts (%.1f%% of the operations),"
+                                + " about %.1f nodes skipped per operation"
+                                + " (%.1f%% of the traversal from the head)",
+                        fingerStarts, 100.0 * fingerStarts / operations,
+                        (double) skipped / operations,
+                        100.0 * skipped / (skipped + steps));
+            }
+            return result;
+        }
+
+        private static String lockLine(long acquired, long contended,
+                long blockedNanos) {
+            return String.format(
+                    "%d acquired, %d contended (%.1f%%), blocked %.1f ms"
+                            + " (avg %.2f us per contended acquisition)",
+                    acquired, contended,
+                    acquired == 0 ? 0.0 : 100.0 * contended / acquired,
+                    blockedNanos / 1e6,
+                    contended == 0 ? 0.0 : blockedNanos / 1e3 / contended);
+        }
+    }
+
+    /* counters of every thread that ever counted something */
+    private static final CopyOnWriteArrayList<Counters> all = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Counters> mine = ThreadLocal.withInitial(() -> {
+        Counters counters = new Counters();
+        all.add(counters);
+        return counters;
+    });
+
+    // Prevent accidental construction.
+    private LockStats() {
+        // nothing
+    }
+
+    /**
+     * Acquires the lock, counting the acquisition, and if it was not free,
+     * the time spent waiting for it.
+     *
+     * @param lock
+     *            the lock to acquire
+     * @param head
+     *            whether this is the head, root or only lock of the data
+     *            structure
+     */
+    static void lock(Lock lock, boolean head) {
+        if (!ENABLED) {
+            lock.lock();
+            return;
+        }
+        Counters counters = mine.get();
+        if (lock.tryLock()) {
+            if (head) {
+                counters.headAcquired++;
+            } else {
+                counters.nodeAcquired++;
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        long blocked = System.nanoTime() - start;
+        if (head) {
+            counters.headAcquired++;
+            counters.headContended++;
+            counters.headBlockedNanos += blocked;
+        } else {
+            counters.nodeAcquired++;
+            counters.nodeContended++;
+            counters.nodeBlockedNanos += blocked;
+        }
+    }
+
+    /** Marks the start of an add or remove. */
+    static void startOperation() {
+        if (ENABLED) {
+            Counters counters = mine.get();
+            counters.operations++;
+            counters.currentSteps = 0;
+        }
+    }
+
+    /**
+     * Counts an operation that starts at a finger instead of at the head.
+     *
+     * @param nodes
+     *            the number of nodes before the finger, about
+     */
+    static void skip(int nodes) {
+        if (ENABLED) {
+            Counters counters = mine.get();
+            counters.fingerStarts++;
+            counters.skipped += nodes;
+        }
+    }
+
+    /** Counts a step from one node to the next. */
+    static void step() {
+        if (ENABLED) {
+            Counters counters = mine.get();
+            counters.steps++;
+            if (++counters.currentSteps > counters.maxSteps) {
+                counters.maxSteps = counters.currentSteps;
+            }
+        }
+    }
+
+    /**
+     * Sets the counters of all threads to 0. Only to be called while no
+     * thread is using a data structure.
+     */
+    public static void reset() {
+        for (Counters counters : all) {
+            counters.reset();
+        }
+    }
+
+    /**
+     * Returns the sum of the counters of all threads. Only to be called while
+     * no thread is using a data structure.
+     *
+     * @return the sum
+     */
+    public static Counters collect() {
+        Counters sum = new Counters();
+        for (Counters counters : all) {
+            sum.add(counters);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,154 @@
+package data_structures.implementation;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-thread free lists of nodes, with epoch-based reclamation for nodes
+ * that other threads may still be looking at.
+ *
+ * A data structure either gives a node back with {@link #free}, when no other
+ * thread can hold a reference to it any more (a coarse lock, or hand-over-hand
+ * locking with the node and its parent locked), or with {@link #retire}, when
+ * lock-free traversals might still reach it. A retired node is only handed out
+ * again once the global epoch has moved on twice, and the epoch only moves on
+ * when every thread inside {@link #enter}/{@link #exit} has seen the current
+ * one, so nobody that could have found the node is still running.
+ *
+ * The lists belong to a slot, and a thread that has finished leaves its slot
+ * (with its nodes) to the next thread that registers. DoRuns starts new
+ * threads for every run, so the nodes freed in one run are reused in the next.
+ *
+ * @param <N>
+ *            the node type
+ */
+class NodePool<N> {
+    /* announced epoch of a thread outside of enter/exit */
+    private static final long IDLE = -1;
+    /* retirements between two attempts to advance the epoch */
+    private static final int ADVANCE_EVERY = 64;
+
+    private class Slot{
+        volatile Thread owner;
+        volatile long announced = IDLE;
+        final ArrayList<N> free = new ArrayList<>();
+        /* nodes retired in epoch limboEpoch[i], for three consecutive epochs */
+        @SuppressWarnings("unchecked")
+        final ArrayList<N>[] limbo = (ArrayList<N>[]) new ArrayList<?>[3];
+        final long[] limboEpoch = new long[3];
+        int retired;
+
+        public Slot(Thread owner){
+            this.owner = owner;
+            for (int i = 0; i < limbo.length; i++)
+                limbo[i] = new ArrayList<>();
+        }
+    }
+
+    private final AtomicLong epoch = new AtomicLong(0);
+    /* copy on write, only registering threads change it */
+    private volatile Slot[] slots = newSlots(0);
+    private final ThreadLocal<Slot> mySlot = ThreadLocal.withInitial(this::register);
+
+    /**
+     * Returns a free node of the calling thread, to be reinitialized by the
+     * caller.
+     * @return a node, or null if there is none and a new one must be made
+     */
+    public N get(){
+        ArrayList<N> free = mySlot.get().free;
+        return free.isEmpty() ? null : free.remove(free.size() - 1);
+    }
+
+    /**
+     * Gives a node back for immediate reuse. The caller guarantees that no
+     * other thread can still reach the node.
+     * @param node the unlinked node
+     */
+    public void free(N node){
+        mySlot.get().free.add(node);
+    }
+
+    /**
+     * Marks the start of an operation that reads nodes without holding locks
+     * that keep them in the data structure. Every enter must be followed by an
+     * {@link #exit}, also when the operation throws.
+     */
+    public void enter(){
+        mySlot.get().announced = epoch.get();
+    }
+
+    public void exit(){
+        mySlot.get().announced = IDLE;
+    }
+
+    /**
+     * Gives back a node that threads inside enter/exit may still hold. Must be
+     * called after the node was unlinked.
+     * @param node the unlinked node
+     */
+    public void retire(N node){
+        Slot slot = mySlot.get();
+        long e = epoch.get();
+        reclaim(slot, e);
+        int i = (int) (e % 3);
+        slot.limbo[i].add(node);
+        slot.limboEpoch[i] = e;
+        if (++slot.retired % ADVANCE_EVERY == 0)
+            tryAdvance(e);
+    }
+
+    /**
+     * This method moves the nodes that were retired at least two epochs ago to
+     * the free list.
+     * @param slot the slot of the calling thread
+     * @param e the current epoch
+     */
+    private void reclaim(Slot slot, long e){
+        for (int i = 0; i < slot.limbo.length; i++){
+            if (slot.limboEpoch[i] <= e - 2 && !slot.limbo[i].isEmpty()){
+                slot.free.addAll(slot.limbo[i]);
+                slot.limbo[i].clear();
+            }
+        }
+    }
+
+    /**
+     * This method moves the global epoch from e to e + 1, if every thread
+     * that is inside enter/exit has announced e.
+     * @param e the epoch read by the caller
+     */
+    private void tryAdvance(long e){
+        for (Slot slot : slots){
+            long announced = slot.announced;
+            if (announced != IDLE && announced != e)
+                return;
+        }
+        epoch.compareAndSet(e, e + 1);
+    }
+
+    /**
+     * This method gives the calling thread a slot, preferably one whose thread
+     * has finished, so its nodes are not lost.
+     * @return the slot of the calling thread
+     */
+    private synchronized Slot register(){
+        Thread me = Thread.currentThread();
+        for (Slot slot : slots){
+            if (!slot.owner.isAlive()){
+                slot.owner = me;
+                return slot;
+            }
+        }
+        Slot[] grown = newSlots(slots.length + 1);
+        System.arraycopy(slots, 0, grown, 0, slots.length);
+        grown[slots.length] = new Slot(me);
+        slots = grown;
+        return grown[slots.length - 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Slot[] newSlots(int n){
+        return (Slot[]) new NodePool<?>.Slot[n];
+    }
+}
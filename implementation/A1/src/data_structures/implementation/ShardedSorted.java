@@ -0,0 +1,167 @@
+package data_structures.implementation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import data_structures.Sorted;
+
+/**
+ * Splits the key space into ranges, each held by its own data structure, so
+ * that operations on different ranges never meet at a shared head or root
+ * lock. Range i holds the keys from boundary i - 1 (inclusive) up to boundary
+ * i (exclusive); the first and last ranges are open-ended. Equal keys always
+ * end up in the same range, so duplicates work as in the data structures
+ * themselves.
+ *
+ * toArrayList concatenates the ranges in order, so the result is sorted. A
+ * snapshot is made range by range, so it is not the content at one moment even
+ * if the snapshots of the ranges are: while one range is copied, operations on
+ * a later range can complete, and the copy of that range shows them, even
+ * though the earlier ranges were copied before they happened.
+ *
+ * @param <T>
+ *            the type of the elements
+ */
+public class ShardedSorted<T extends Comparable<T>> implements Sorted<T> {
+    /* samples per range taken by sampleBoundaries */
+    private static final int SAMPLES_PER_SHARD = 256;
+
+    private final T[] boundaries;
+    private final ArrayList<Sorted<T>> shards;
+
+    /**
+     * @param boundaries the sorted lower bounds of all ranges but the first;
+     *            there is one range more than there are boundaries
+     * @param factory creates the data structure of every range
+     */
+    public ShardedSorted(T[] boundaries, Supplier<Sorted<T>> factory){
+        this.boundaries = boundaries.clone();
+        this.shards = new ArrayList<>(boundaries.length + 1);
+        for (int i = 0; i <= boundaries.length; i++)
+            shards.add(factory.get());
+    }
+
+    /**
+     * Chooses boundaries that split the specified data into ranges of about
+     * the same size, from a sample of it.
+     * @param data the keys expected, in random order, at least 1
+     * @param nrShards the number of ranges wanted, at least 1
+     * @return nrShards - 1 sorted boundaries
+     */
+    public static <T extends Comparable<T>> T[] sampleBoundaries(T[] data,
+            int nrShards){
+        if (data.length == 0)
+            throw new IllegalArgumentException("no data to sample");
+        int step = Math.max(1, data.length / (nrShards * SAMPLES_PER_SHARD));
+        T[] sample = Arrays.copyOf(data, (data.length + step - 1) / step);
+        for (int i = 0; i < sample.length; i++)
+            sample[i] = data[i * step];
+        Arrays.sort(sample);
+        T[] boundaries = Arrays.copyOf(data, nrShards - 1);
+        for (int i = 1; i < nrShards; i++)
+            boundaries[i - 1] = sample[i * sample.length / nrShards];
+        return boundaries;
+    }
+
+    public void add(T t) {
+        shardOf(t).add(t);
+    }
+
+    public void remove(T t) {
+        shardOf(t).remove(t);
+    }
+
+    @Override
+    public boolean contains(T t) {
+        return shardOf(t).contains(t);
+    }
+
+    /* the batch is split by range, so every range still gets one call */
+    @Override
+    public void addAll(T[] items) {
+        T[][] split = split(items);
+        for (int i = 0; i < split.length; i++)
+            if (split[i].length > 0)
+                shards.get(i).addAll(split[i]);
+    }
+
+    @Override
+    public void removeAll(T[] items) {
+        T[][] split = split(items);
+        for (int i = 0; i < split.length; i++)
+            if (split[i].length > 0)
+                shards.get(i).removeAll(split[i]);
+    }
+
+    /* sorted items split into sorted slices */
+    @Override
+    public void bulkLoad(T[] items) {
+        int from = 0;
+        for (int i = 0; i < shards.size(); i++){
+            int to = from;
+            while (to < items.length && shardIndex(items[to]) == i)
+                to++;
+            if (to > from)
+                shards.get(i).bulkLoad(Arrays.copyOfRange(items, from, to));
+            from = to;
+        }
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        for (Sorted<T> shard : shards)
+            list.addAll(shard.toArrayList());
+        return list;
+    }
+
+    @Override
+    public ArrayList<T> snapshot() {
+        ArrayList<T> list = new ArrayList<>();
+        for (Sorted<T> shard : shards)
+            list.addAll(shard.snapshot());
+        return list;
+    }
+
+    private Sorted<T> shardOf(T t){
+        return shards.get(shardIndex(t));
+    }
+
+    /**
+     * This method finds the range of a key, by binary search for the first
+     * boundary above it.
+     * @param t the key
+     * @return the index of its range
+     */
+    private int shardIndex(T t){
+        int low = 0, high = boundaries.length;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (boundaries[mid].compareTo(t) > 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    /**
+     * This method splits items by range, keeping their order.
+     * @param items the items to split
+     * @return per range, its items
+     */
+    private T[][] split(T[] items){
+        int[] counts = new int[shards.size()];
+        int[] index = new int[items.length];
+        for (int i = 0; i < items.length; i++)
+            counts[index[i] = shardIndex(items[i])]++;
+        @SuppressWarnings("unchecked")
+        T[][] split = (T[][]) new Comparable<?>[shards.size()][];
+        for (int i = 0; i < split.length; i++)
+            split[i] = Arrays.copyOf(items, counts[i]);
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < items.length; i++)
+            split[index[i]][counts[index[i]]++] = items[i];
+        return split;
+    }
+}
@@ -0,0 +1,481 @@
+package data_structures.implementation;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+
+import data_structures.Sorted;
+import data_structures.locks.LockKind;
+
+/**
+ * A fine-grained unrolled list: every node holds a sorted array of items under
+ * one lock, so a traversal takes a lock per node of up to 64 items instead of
+ * per item, and reads the items of a node from one array.
+ *
+ * Nodes are locked hand-over-hand, as in {@link FineGrainedList}. The items of
+ * a node are never larger than the first item of the next node. A full node is
+ * split in two; a node that falls below a quarter full takes the items of its
+ * successor if they fit together, and otherwise enough of them to even out.
+ * Only an empty last node is unlinked, so all other nodes hold items.
+ * Duplicates are kept as separate items, possibly spread over several nodes.
+ *
+ * contains and snapshot take no locks. Every node has a version that writers
+ * make odd while they change the node, and even again after, so a reader can
+ * tell whether what it read from a node was consistent.
+ */
+public class UnrolledList<T extends Comparable<T>> implements Sorted<T> {
+    /** The default number of items per node. */
+    public static final int CAPACITY = 64;
+
+    private class Node{
+        final T[] items;
+        int count;
+        volatile Node next;
+        /* odd while the items, count or next are being changed */
+        volatile int version;
+        Lock lock;
+
+        @SuppressWarnings("unchecked")
+        public Node(){
+            this.items = (T[]) new Comparable<?>[capacity];
+            this.count = 0;
+            this.next = null;
+            this.lock = lockKind.newLock();
+        }
+        public void lock(){
+            LockStats.lock(this.lock, this == head);
+        }
+        public void unlock(){
+            this.lock.unlock();
+        }
+        T first(){
+            return items[0];
+        }
+
+    }
+    /* the kind of lock every node gets */
+    private final LockKind lockKind;
+    private final int capacity;
+    /* head is a sentinel without items */
+    private final Node head;
+    /* failed reads before a reader yields, as in the spin locks */
+    private static final int SPINS_BEFORE_YIELD = 100;
+    /* lock-free copies tried before snapshot locks the head */
+    private static final int OPTIMISTIC_TRIES = 4;
+
+    public UnrolledList(){
+        this(LockKind.REENTRANT);
+    }
+    public UnrolledList(LockKind lockKind){
+        this(lockKind, CAPACITY);
+    }
+    /**
+     * @param lockKind the kind of lock every node gets
+     * @param capacity the number of items per node, at least 4
+     */
+    public UnrolledList(LockKind lockKind, int capacity){
+        this.lockKind = lockKind;
+        this.capacity = Math.max(4, capacity);
+        head = new Node();
+    }
+
+    public void add(T t) {
+        LockStats.startOperation();
+        Node pred = head, curr;
+        pred.lock();
+        try {
+            if (head.next == null){ /* empty list */
+                Node node = new Node();
+                node.items[node.count++] = t;
+                beginWrite(head);
+                head.next = node;
+                endWrite(head);
+                return;
+            }
+            curr = pred.next;
+            curr.lock();
+            try {
+                /* the last node whose first item is not larger than t,
+                 or the first node */
+                Node next;
+                while ((next = curr.next) != null){
+                    next.lock();
+                    if (next.first().compareTo(t) > 0){
+                        next.unlock();
+                        break;
+                    }
+                    pred.unlock();
+                    pred = curr;
+                    curr = next;
+                    LockStats.step();
+                }
+                if (curr.count == capacity)
+                    curr = split(curr, t);
+                insert(curr, t);
+            } finally {
+                curr.unlock();
+            }
+        } finally {
+            pred.unlock();
+        }
+    }
+
+    public void remove(T t) {
+        LockStats.startOperation();
+        Node pred = head, curr;
+        pred.lock();
+        try {
+            curr = pred.next;
+            if (curr == null) /* empty list */
+                return;
+            curr.lock();
+            try {
+                /* the only node that can hold t, if any does: the last one
+                 whose first item is not larger than t */
+                Node next;
+                while ((next = curr.next) != null){
+                    next.lock();
+                    if (next.first().compareTo(t) > 0){
+                        next.unlock();
+                        break;
+                    }
+                    pred.unlock();
+                    pred = curr;
+                    curr = next;
+                    LockStats.step();
+                }
+                int i = indexOf(curr, t);
+                if (i < 0)
+                    return;
+                beginWrite(curr);
+                System.arraycopy(curr.items, i + 1, curr.items, i, curr.count - i - 1);
+                curr.items[--curr.count] = null;
+                endWrite(curr);
+                if (curr.count < capacity / 4)
+                    underflow(pred, curr);
+            } finally {
+                curr.unlock();
+            }
+        } finally {
+            pred.unlock();
+        }
+    }
+
+    /* sorted items, so the nodes are filled one after the other */
+    @Override
+    public void bulkLoad(T[] items) {
+        head.lock();
+        try {
+            if (head.next == null){
+                /* three quarters full, so adds do not split right away */
+                int perNode = capacity * 3 / 4;
+                /* the nodes are linked up first, and then published at once,
+                 so a lock-free reader never sees part of them */
+                Node first = null, last = null;
+                for (int from = 0; from < items.length; from += perNode){
+                    Node node = new Node();
+                    node.count = Math.min(perNode, items.length - from);
+                    System.arraycopy(items, from, node.items, 0, node.count);
+                    if (last == null)
+                        first = node;
+                    else
+                        last.next = node;
+                    last = node;
+                }
+                beginWrite(head);
+                head.next = first;
+                endWrite(head);
+                return;
+            }
+        } finally {
+            head.unlock();
+        }
+        for (T t : items)
+            add(t);
+    }
+
+    /**
+     * Searches without locking, and starts over for as long as writers come
+     * by. It never takes a lock, so it never holds up a writer either.
+     */
+    @Override
+    public boolean contains(T t) {
+        for (int spins = 1; ; spins++){
+            Boolean found = search(t);
+            if (found != null)
+                return found;
+            spinWait(spins);
+        }
+    }
+
+    public ArrayList<T> toArrayList() {
+        ArrayList<T> list = new ArrayList<>();
+        Node temp = head.next;
+        while (temp != null){
+            list.addAll(Arrays.asList(temp.items).subList(0, temp.count));
+            temp = temp.next;
+        }
+        return list;
+    }
+
+    /**
+     * Copies the nodes without locking, each between two reads of its version,
+     * and checks at the end that none of them changed since, so the copy is
+     * the list as it was at one moment. As in {@link FineGrainedTree}, the
+     * head is locked after a few failed tries. That keeps out new writers, and
+     * every writer already past the head is done after at most two changes
+     * (a split and an insert, or a removal and a refill). So the copy fails at
+     * most twice per such writer.
+     */
+    @Override
+    public ArrayList<T> snapshot() {
+        ArrayList<T> list = new ArrayList<>();
+        for (int i = 0; i < OPTIMISTIC_TRIES; i++){
+            if (tryCopy(list))
+                return list;
+            list.clear();
+            Thread.yield();
+        }
+        head.lock();
+        try {
+            while (!tryCopy(list)){
+                list.clear();
+                Thread.yield();
+            }
+            return list;
+        } finally {
+            head.unlock();
+        }
+    }
+
+    /**
+     * This method searches an item without locking. A node only counts if its
+     * version did not change while it was read, and not before the version of
+     * the next node was read either, so an item that moves from one node to
+     * its predecessor can not slip by between the two.
+     * @param t the item to look for
+     * @return whether t is present, or null if a writer came by
+     */
+    private Boolean search(T t){
+        Node curr = head;
+        int version = curr.version;
+        if ((version & 1) != 0)
+            return null;
+        while (true){
+            T[] items = curr.items;
+            int low = 0, high = curr.count - 1;
+            boolean found = false;
+            while (low <= high){
+                int mid = (low + high) >>> 1;
+                T item = items[mid];
+                if (item == null) /* read while it was being changed */
+                    return null;
+                int c = item.compareTo(t);
+                if (c < 0){
+                    low = mid + 1;
+                } else if (c > 0){
+                    high = mid - 1;
+                } else {
+                    found = true;
+                    break;
+                }
+            }
+            Node next = curr.next;
+            /* all items smaller than t, so it can only be further on */
+            boolean further = !found && low == curr.count && next != null;
+            if (!further){
+                VarHandle.acquireFence();
+                return curr.version == version ? found : null;
+            }
+            int nextVersion = next.version;
+            VarHandle.acquireFence();
+            if ((nextVersion & 1) != 0 || curr.version != version)
+                return null;
+            curr = next;
+            version = nextVersion;
+        }
+    }
+
+    /**
+     * This method copies the items of all nodes, and checks that none of the
+     * nodes changed after it was read.
+     * @param list the list the items are added to
+     * @return whether the list holds the items as they were at one moment
+     */
+    private boolean tryCopy(ArrayList<T> list){
+        ArrayList<Node> nodes = new ArrayList<>();
+        int[] versions = new int[16];
+        Node curr = head;
+        while (curr != null){
+            int version, from = list.size();
+            Node next;
+            for (int spins = 1; ; spins++){
+                version = curr.version;
+                if ((version & 1) == 0){
+                    T[] items = curr.items;
+                    int count = Math.min(curr.count, items.length);
+                    for (int i = 0; i < count; i++)
+                        list.add(items[i]);
+                    next = curr.next;
+                    VarHandle.acquireFence();
+                    if (curr.version == version)
+                        break;
+                    list.subList(from, list.size()).clear();
+                }
+                spinWait(spins);
+            }
+            if (nodes.size() == versions.length)
+                versions = Arrays.copyOf(versions, versions.length * 2);
+            versions[nodes.size()] = version;
+            nodes.add(curr);
+            curr = next;
+        }
+        for (int i = 0; i < nodes.size(); i++){
+            if (nodes.get(i).version != versions[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called by a reader on every failed try to read a node.
+     * @param spins the number of tries so far, starting at 1
+     */
+    private static void spinWait(int spins){
+        if (spins % SPINS_BEFORE_YIELD == 0)
+            Thread.yield();
+        else
+            Thread.onSpinWait();
+    }
+
+    /**
+     * This method makes the version of a node odd, before the node is changed.
+     * @param node the locked node
+     */
+    private void beginWrite(Node node){
+        node.version++;
+        /* the changes may not be seen before the odd version */
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * This method makes the version of a node even again, after the node was
+     * changed.
+     * @param node the locked node
+     */
+    private void endWrite(Node node){
+        node.version++;
+    }
+
+    /**
+     * This method inserts an item in a node that is not full, after the items
+     * equal to it.
+     * @param node the locked node
+     * @param t the item
+     */
+    private void insert(Node node, T t){
+        int low = 0, high = node.count;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (node.items[mid].compareTo(t) > 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        beginWrite(node);
+        System.arraycopy(node.items, low, node.items, low + 1, node.count - low);
+        node.items[low] = t;
+        node.count++;
+        endWrite(node);
+    }
+
+    /**
+     * This method finds an item in a node.
+     * @param node the locked node
+     * @param t the item
+     * @return the index of an item equal to t, or -1
+     */
+    private int indexOf(Node node, T t){
+        int low = 0, high = node.count - 1;
+        while (low <= high){
+            int mid = (low + high) >>> 1;
+            int c = node.items[mid].compareTo(t);
+            if (c < 0)
+                low = mid + 1;
+            else if (c > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * This method moves the upper half of a full node to a new node after it.
+     * The new node can only be reached through the locked node, so it is locked
+     * too, until the caller unlocks the returned node.
+     * @param node the locked, full node
+     * @param t the item about to be added
+     * @return the locked node that t goes into
+     */
+    private Node split(Node node, T t){
+        Node upper = new Node();
+        int half = capacity / 2;
+        upper.count = capacity - half;
+        System.arraycopy(node.items, half, upper.items, 0, upper.count);
+        upper.next = node.next;
+        beginWrite(node);
+        Arrays.fill(node.items, half, capacity, null);
+        node.count = half;
+        node.next = upper;
+        endWrite(node);
+        if (upper.first().compareTo(t) > 0)
+            return node;
+        /* hand over to the new node, which nobody else can have locked */
+        upper.lock();
+        node.unlock();
+        return upper;
+    }
+
+    /**
+     * This method refills a node that fell below a quarter full from its
+     * successor, or unlinks it if it is empty and has none.
+     * @param pred the locked predecessor of node
+     * @param node the locked node
+     */
+    private void underflow(Node pred, Node node){
+        Node next = node.next;
+        if (next == null){
+            if (node.count == 0){
+                beginWrite(pred);
+                pred.next = null;
+                endWrite(pred);
+            }
+            return;
+        }
+        next.lock();
+        beginWrite(node);
+        beginWrite(next);
+        try {
+            if (node.count + next.count <= capacity){
+                /* merge: nobody can reach next without the lock of node */
+                System.arraycopy(next.items, 0, node.items, node.count, next.count);
+                node.count += next.count;
+                node.next = next.next;
+            } else {
+                /* even out, taking the smallest items of next */
+                int move = (next.count - node.count) / 2;
+                System.arraycopy(next.items, 0, node.items, node.count, move);
+                node.count += move;
+                System.arraycopy(next.items, move, next.items, 0, next.count - move);
+                Arrays.fill(next.items, next.count - move, next.count, null);
+                next.count -= move;
+            }
+        } finally {
+            endWrite(next);
+            endWrite(node);
+            next.unlock();
+        }
+    }
+}
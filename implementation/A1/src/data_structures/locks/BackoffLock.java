@@ -0,0 +1,37 @@
+package data_structures.locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link TTASLock} that backs off for a random, exponentially growing time
+ * after losing the race for the lock, so fewer threads retry at once.
+ */
+public class BackoffLock extends SpinLock {
+    /* backoff limits, in nano seconds */
+    private static final long MIN_DELAY = 1_000;
+    private static final long MAX_DELAY = 1_000_000;
+
+    private final AtomicBoolean state = new AtomicBoolean(false);
+
+    public void lock() {
+        long limit = MIN_DELAY;
+        while (true) {
+            for (int spins = 1; state.get(); spins++)
+                spinWait(spins);
+            if (!state.getAndSet(true))
+                return;
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(limit) + 1);
+            limit = Math.min(MAX_DELAY, 2 * limit);
+        }
+    }
+
+    public boolean tryLock() {
+        return !state.get() && !state.getAndSet(true);
+    }
+
+    public void unlock() {
+        state.set(false);
+    }
+}
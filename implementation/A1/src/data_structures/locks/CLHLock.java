@@ -0,0 +1,66 @@
+package data_structures.locks;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CLH queue lock: a thread enqueues a node and spins on the node of its
+ * predecessor, so every waiter spins on a different location and the lock is
+ * handed over in FIFO order.
+ *
+ * Lock coupling needs a lock per node, so the queue nodes do not live in a
+ * thread local of each lock, but come from a small per-thread pool. A thread
+ * leaves its own node behind for its successor and takes over the node of its
+ * predecessor, as in the original algorithm.
+ */
+public class CLHLock extends SpinLock {
+    private static class QNode{
+        volatile boolean locked;
+    }
+
+    private static final ThreadLocal<ArrayDeque<QNode>> pool =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final AtomicReference<QNode> tail = new AtomicReference<>(new QNode());
+    /* only touched by the thread holding the lock */
+    private QNode mine, pred;
+
+    public void lock() {
+        QNode qnode = take();
+        qnode.locked = true;
+        QNode p = tail.getAndSet(qnode);
+        for (int spins = 1; p.locked; spins++)
+            spinWait(spins);
+        mine = qnode;
+        pred = p;
+    }
+
+    public boolean tryLock() {
+        QNode p = tail.get();
+        if (p.locked)
+            return false;
+        QNode qnode = take();
+        qnode.locked = true;
+        if (!tail.compareAndSet(p, qnode)) {
+            qnode.locked = false;
+            pool.get().push(qnode);
+            return false;
+        }
+        mine = qnode;
+        pred = p;
+        return true;
+    }
+
+    public void unlock() {
+        QNode qnode = mine, p = pred;
+        mine = pred = null;
+        qnode.locked = false;
+        /* nobody looks at the predecessor's node any more */
+        pool.get().push(p);
+    }
+
+    private static QNode take() {
+        QNode qnode = pool.get().poll();
+        return qnode != null ? qnode : new QNode();
+    }
+}
@@ -0,0 +1,65 @@
+package data_structures.locks;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The kinds of locks a data structure can be configured with.
+ */
+public enum LockKind {
+    REENTRANT("reentrant"),
+    TAS("tas"),
+    TTAS("ttas"),
+    BACKOFF("backoff"),
+    CLH("clh"),
+    MCS("mcs");
+
+    private final String name;
+
+    LockKind(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates a new, unlocked lock of this kind.
+     *
+     * @return the lock
+     */
+    public Lock newLock() {
+        switch (this) {
+        case TAS:
+            return new TASLock();
+        case TTAS:
+            return new TTASLock();
+        case BACKOFF:
+            return new BackoffLock();
+        case CLH:
+            return new CLHLock();
+        case MCS:
+            return new MCSLock();
+        default:
+            return new ReentrantLock();
+        }
+    }
+
+    /**
+     * Looks up a lock kind by its command line name.
+     *
+     * @param name
+     *            the name, for instance "ttas"
+     * @return the lock kind, or null if there is none with that name
+     */
+    public static LockKind fromName(String name) {
+        for (LockKind kind : values()) {
+            if (kind.name.equalsIgnoreCase(name)) {
+                return kind;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,70 @@
+package data_structures.locks;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MCS queue lock: like {@link CLHLock}, but every thread spins on its own
+ * node, and the holder hands the lock over by clearing the flag of its
+ * successor.
+ *
+ * The queue nodes come from a small per-thread pool, so that the many locks
+ * of a fine-grained data structure do not each need a thread local.
+ */
+public class MCSLock extends SpinLock {
+    private static class QNode{
+        volatile boolean locked;
+        volatile QNode next;
+    }
+
+    private static final ThreadLocal<ArrayDeque<QNode>> pool =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final AtomicReference<QNode> tail = new AtomicReference<>(null);
+    /* only touched by the thread holding the lock */
+    private QNode mine;
+
+    public void lock() {
+        QNode qnode = take();
+        QNode p = tail.getAndSet(qnode);
+        if (p != null) {
+            qnode.locked = true;
+            p.next = qnode;
+            for (int spins = 1; qnode.locked; spins++)
+                spinWait(spins);
+        }
+        mine = qnode;
+    }
+
+    public boolean tryLock() {
+        QNode qnode = take();
+        if (!tail.compareAndSet(null, qnode)) {
+            pool.get().push(qnode);
+            return false;
+        }
+        mine = qnode;
+        return true;
+    }
+
+    public void unlock() {
+        QNode qnode = mine;
+        mine = null;
+        if (qnode.next == null) {
+            if (tail.compareAndSet(qnode, null)) {
+                pool.get().push(qnode);
+                return;
+            }
+            /* a successor is on its way, wait until it is linked */
+            for (int spins = 1; qnode.next == null; spins++)
+                spinWait(spins);
+        }
+        qnode.next.locked = false;
+        qnode.next = null;
+        pool.get().push(qnode);
+    }
+
+    private static QNode take() {
+        QNode qnode = pool.get().poll();
+        return qnode != null ? qnode : new QNode();
+    }
+}
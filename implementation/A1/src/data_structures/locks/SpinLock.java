@@ -0,0 +1,60 @@
+package data_structures.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Base class of the spin locks: they implement lock, tryLock and unlock,
+ * which is all the data structures use, and get a timed tryLock from here.
+ * Waiting in lock is never interruptible, and there are no conditions.
+ */
+abstract class SpinLock implements Lock {
+    /* spins before a waiting thread yields, so that a holder that was
+     preempted gets to run when there are more threads than processors */
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    /**
+     * Called by a waiting thread on every iteration of its spin loop.
+     *
+     * @param spins
+     *            the number of iterations so far, starting at 1
+     */
+    static void spinWait(int spins) {
+        if (spins % SPINS_BEFORE_YIELD == 0)
+            Thread.yield();
+        else
+            Thread.onSpinWait();
+    }
+
+    public void lockInterruptibly() {
+        lock();
+    }
+
+    /**
+     * Spins on {@link #tryLock()} until it succeeds, the time is up, or the
+     * thread is interrupted.
+     */
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        for (int spins = 1; ; spins++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (tryLock())
+                return true;
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+            spinWait(spins);
+        }
+    }
+
+    /**
+     * Not supported: a spin lock has no queue to wait on a condition in.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+}
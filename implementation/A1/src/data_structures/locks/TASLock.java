@@ -0,0 +1,24 @@
+package data_structures.locks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test-and-set lock: every waiting thread keeps swapping the flag, so the
+ * cache line bounces between all of them while the lock is held.
+ */
+public class TASLock extends SpinLock {
+    private final AtomicBoolean state = new AtomicBoolean(false);
+
+    public void lock() {
+        for (int spins = 1; state.getAndSet(true); spins++)
+            spinWait(spins);
+    }
+
+    public boolean tryLock() {
+        return !state.getAndSet(true);
+    }
+
+    public void unlock() {
+        state.set(false);
+    }
+}
@@ -0,0 +1,28 @@
+package data_structures.locks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test-and-test-and-set lock: waiting threads spin on a read of the flag, and
+ * only try to swap it once it looks free.
+ */
+public class TTASLock extends SpinLock {
+    private final AtomicBoolean state = new AtomicBoolean(false);
+
+    public void lock() {
+        while (true) {
+            for (int spins = 1; state.get(); spins++)
+                spinWait(spins);
+            if (!state.getAndSet(true))
+                return;
+        }
+    }
+
+    public boolean tryLock() {
+        return !state.get() && !state.getAndSet(true);
+    }
+
+    public void unlock() {
+        state.set(false);
+    }
+}
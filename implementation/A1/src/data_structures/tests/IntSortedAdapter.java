@@ -0,0 +1,40 @@
+package data_structures.tests;
+
+import java.util.ArrayList;
+
+import data_structures.IntSorted;
+import data_structures.Sorted;
+
+/**
+ * Lets the {@link Sorted} test cases run against an {@link IntSorted} data
+ * structure. Only usable with <code>Integer</code> items.
+ */
+class IntSortedAdapter implements Sorted<Integer> {
+    private final IntSorted sorted;
+
+    public IntSortedAdapter(IntSorted sorted) {
+        this.sorted = sorted;
+    }
+
+    public void add(Integer t) {
+        sorted.add(t);
+    }
+
+    public void remove(Integer t) {
+        sorted.remove(t);
+    }
+
+    @Override
+    public boolean contains(Integer t) {
+        return sorted.contains(t);
+    }
+
+    public ArrayList<Integer> toArrayList() {
+        int[] items = sorted.toIntArray();
+        ArrayList<Integer> list = new ArrayList<>(items.length);
+        for (int item : items) {
+            list.add(item);
+        }
+        return list;
+    }
+}
@@ -1,5 +1,8 @@
 package data_structures.tests;
 
+import java.util.Arrays;
+import java.util.Vector;
+
 class SequentialTestsInteger {
     public static TestCase<?>[] testCases(String ds) {
         return new SequentialTestsInteger().allTestCases(ds);
@@ -8,7 +11,7 @@ class SequentialTestsInteger {
     private TestCase<?>[] allTestCases(String ds) {
         TestCase<?>[] testCases = { new Test1(ds), new Test1a(ds),
                 new Test2(ds), new Test3(ds), new Test4(ds), new Test4a(ds),
-                new Test5(ds), new Test5a(ds), new Test6(ds), new Test6a(ds), };
+                new Test5(ds), new Test5a(ds), new Test6(ds), new Test6a(ds), new Test7(ds), new Test8(ds), new Test9(ds), new Test10(ds), };
 
         return testCases;
     }
@@ -194,4 +197,124 @@ class SequentialTestsInteger {
             this.strEqual("[]");
         }
     }
+
+    class Test7 extends TestCase<Integer> {
+        public Test7(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "Add and remove unsorted batches, with duplicates";
+        }
+
+        @Override
+        public void run() {
+            this.sorted.add(4);
+            this.sorted.add(9);
+            Integer[] batch = { 7, 2, 9, 2, 0 };
+            this.sorted.addAll(batch);
+            this.strEqual("[0, 2, 2, 4, 7, 9, 9]");
+            if (!Arrays.toString(batch).equals("[7, 2, 9, 2, 0]")) {
+                throw new TestFailedException(
+                        "addAll changed its argument: " + Arrays.toString(batch));
+            }
+            this.sorted.removeAll(new Integer[] { 9, 5, 2, 0, 4 });
+            this.strEqual("[2, 7, 9]");
+        }
+    }
+
+    class Test8 extends TestCase<Integer> {
+        public Test8(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "Bulk load 10000 sorted elements, then add and remove";
+        }
+
+        @Override
+        public void run() {
+            Integer[] items = new Integer[10000];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = i / 2; /* every number twice */
+            }
+            this.sorted.bulkLoad(items);
+            this.sorted.remove(0);
+            this.sorted.remove(4999);
+            this.sorted.remove(4999);
+            this.sorted.add(7);
+
+            Vector<Integer> elements = new Vector<Integer>();
+            for (int i = 1; i < items.length - 2; i++) {
+                elements.addElement(items[i]);
+                if (items[i] == 7 && items[i + 1] != 7) {
+                    elements.addElement(7);
+                }
+            }
+
+            this.expectElements(elements);
+        }
+    }
+
+    class Test9 extends TestCase<Integer> {
+        public Test9(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "Contains after adds and removes";
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < 100; i += 2) {
+                this.sorted.add(i);
+            }
+            this.sorted.add(50);
+            this.sorted.remove(50);
+            this.sorted.remove(10);
+            for (int i = -1; i <= 100; i++) {
+                boolean expected = i >= 0 && i < 100 && i % 2 == 0 && i != 10;
+                if (this.sorted.contains(i) != expected) {
+                    throw new TestFailedException(String.format(
+                            "contains(%d) should be %b", i, expected));
+                }
+            }
+        }
+    }
+
+    class Test10 extends TestCase<Integer> {
+        public Test10(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "Adds and removes around items that were just removed";
+        }
+
+        @Override
+        public void run() {
+            /* every operation starts right after a node that the previous
+             one added or removed, or just before it */
+            for (int i = 0; i < 10; i++) {
+                this.sorted.add(i);
+            }
+            this.sorted.remove(5);
+            this.sorted.remove(4);
+            this.sorted.add(4);
+            this.sorted.remove(4);
+            this.sorted.remove(3);
+            this.sorted.add(1);
+            this.sorted.add(6);
+            this.sorted.remove(9);
+            this.sorted.add(9);
+            this.sorted.remove(0);
+            this.sorted.add(0);
+            this.strEqual("[0, 1, 1, 2, 6, 6, 7, 8, 9]");
+        }
+    }
 }
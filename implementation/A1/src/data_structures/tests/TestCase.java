@@ -3,16 +3,43 @@ package data_structures.tests;
 import java.util.Vector;
 
 import data_structures.Sorted;
+import data_structures.implementation.AVLTree;
 import data_structures.implementation.CoarseGrainedList;
 import data_structures.implementation.CoarseGrainedTree;
+import data_structures.implementation.EliminationSorted;
 import data_structures.implementation.FineGrainedList;
 import data_structures.implementation.FineGrainedTree;
+import data_structures.implementation.FlatCombiningSorted;
+import data_structures.implementation.IntLazyList;
+import data_structures.implementation.IntLazyTree;
+import data_structures.implementation.LazyList;
+import data_structures.implementation.LazyTree;
+import data_structures.implementation.LockFreeList;
+import data_structures.implementation.LockFreeSkipList;
+import data_structures.implementation.LockFreeTree;
+import data_structures.implementation.ShardedSorted;
+import data_structures.implementation.UnrolledList;
+import data_structures.locks.LockKind;
 
 abstract class TestCase<T extends Comparable<T>> {
     private static final String CGL = "cgl";
     private static final String CGT = "cgt";
     private static final String FGL = "fgl";
     private static final String FGT = "fgt";
+    private static final String LL = "ll";
+    private static final String LT = "lt";
+    private static final String LFL = "lfl";
+    private static final String LFSL = "lfsl";
+    private static final String LFT = "lft";
+    private static final String AVL = "avl";
+    private static final String UL = "ul";
+    static final String FCCGL = "fccgl";
+    static final String FCCGT = "fccgt";
+    static final String SFGT = "sfgt";
+    static final String EFGL = "efgl";
+    static final String ECGT = "ecgt";
+    static final String ILL = "ill";
+    static final String ILT = "ilt";
 
     protected Sorted<T> sorted;
     protected String ds;
@@ -26,6 +53,7 @@ abstract class TestCase<T extends Comparable<T>> {
 
     abstract public void run();
 
+    @SuppressWarnings("unchecked")
     protected void buildSorted(String dataStructure) {
         if (dataStructure.equals(CGL)) {
             this.sorted = new CoarseGrainedList<T>();
@@ -35,6 +63,39 @@ abstract class TestCase<T extends Comparable<T>> {
             this.sorted = new FineGrainedList<T>();
         } else if (dataStructure.equals(FGT)) {
             this.sorted = new FineGrainedTree<T>();
+        } else if (dataStructure.equals(LL)) {
+            this.sorted = new LazyList<T>();
+        } else if (dataStructure.equals(LT)) {
+            this.sorted = new LazyTree<T>();
+        } else if (dataStructure.equals(LFL)) {
+            this.sorted = new LockFreeList<T>();
+        } else if (dataStructure.equals(LFSL)) {
+            this.sorted = new LockFreeSkipList<T>();
+        } else if (dataStructure.equals(LFT)) {
+            this.sorted = new LockFreeTree<T>();
+        } else if (dataStructure.equals(AVL)) {
+            this.sorted = new AVLTree<T>();
+        } else if (dataStructure.equals(UL)) {
+            /* small nodes, so the tests split and merge them a lot */
+            this.sorted = new UnrolledList<T>(LockKind.REENTRANT, 4);
+        } else if (dataStructure.equals(FCCGL)) {
+            this.sorted = new FlatCombiningSorted<T>(new CoarseGrainedList<T>());
+        } else if (dataStructure.equals(FCCGT)) {
+            this.sorted = new FlatCombiningSorted<T>(new CoarseGrainedTree<T>());
+        } else if (dataStructure.equals(EFGL)) {
+            this.sorted = new EliminationSorted<T>(new FineGrainedList<T>(), 2);
+        } else if (dataStructure.equals(ECGT)) {
+            this.sorted = new EliminationSorted<T>(new CoarseGrainedTree<T>(), 2);
+        } else if (dataStructure.equals(SFGT)) {
+            /* Integer boundaries, so the string tests are skipped */
+            this.sorted = (Sorted<T>) new ShardedSorted<Integer>(
+                    new Integer[] { 3, 50, 150 },
+                    () -> new FineGrainedTree<Integer>());
+        } else if (dataStructure.equals(ILL)) {
+            /* int only, so the string tests are skipped for these */
+            this.sorted = (Sorted<T>) new IntSortedAdapter(new IntLazyList());
+        } else if (dataStructure.equals(ILT)) {
+            this.sorted = (Sorted<T>) new IntSortedAdapter(new IntLazyTree());
         } else {
             System.out.printf("Unkown algoritm %s\n", dataStructure);
             System.exit(1);
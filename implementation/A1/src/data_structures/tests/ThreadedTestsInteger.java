@@ -1,7 +1,9 @@
 package data_structures.tests;
 
+import java.util.ArrayList;
 import java.util.Vector;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 class ThreadedTestsInteger {
     public static TestCase<?>[] testCases(String ds) {
@@ -10,7 +12,21 @@ class ThreadedTestsInteger {
 
     private TestCase<?>[] allTestCases(String ds) {
         TestCase<?>[] testCases = { new Test1(ds), new Test2(ds),
-                new Test2b(ds), };
+                new Test2b(ds), new Test4(ds), new Test5(ds), };
+        if (ds.equals("cgl") || ds.equals("cgt") || ds.equals("fgt")
+                || ds.equals("ul") || ds.equals(TestCase.FCCGL)
+                || ds.equals(TestCase.FCCGT)) {
+            /* the others only have the default snapshot */
+            testCases = UnitTestRunner.concat(testCases,
+                    new TestCase<?>[] { new Test3(ds) });
+        }
+        if (ds.equals("cgt") || ds.equals("fgt") || ds.equals("ul")
+                || ds.equals(TestCase.FCCGT)) {
+            /* the lists without a bulkLoad of their own take too long to
+             fill */
+            testCases = UnitTestRunner.concat(testCases,
+                    new TestCase<?>[] { new Test6(ds) });
+        }
         return testCases;
     }
 
@@ -201,4 +217,265 @@ class ThreadedTestsInteger {
             this.expectElements(elements);
         }
     }
+
+    class Test3 extends ThreadedTestCase<Integer> {
+        public Test3(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "Snapshots while another thread adds and removes";
+        }
+
+        @Override
+        public void runThreaded() throws Exception {
+            /* the even numbers stay, the writer adds and removes odd ones one
+             at a time, so a snapshot holds all even ones and at most 1 odd */
+            for (int i = 0; i < 100; i += 2) {
+                sorted.add(i);
+            }
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread writer = new Thread(new TestRunnable() {
+                @Override
+                public void runThreaded() throws Exception {
+                    barrier.await();
+                    for (int i = 1; i < 100; i += 2) {
+                        sorted.add(i);
+                        sorted.remove(i);
+                    }
+                }
+            });
+
+            writer.start();
+            barrier.await();
+            for (int n = 0; n < 5; n++) {
+                ArrayList<Integer> snapshot = sorted.snapshot();
+                int odd = 0;
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (snapshot.get(i) % 2 != 0) {
+                        odd++;
+                    }
+                    if (i > 0 && snapshot.get(i - 1) > snapshot.get(i)) {
+                        throw new TestFailedException(
+                                "Snapshot not sorted: " + snapshot);
+                    }
+                }
+                if (odd > 1 || snapshot.size() - odd != 50) {
+                    throw new TestFailedException(
+                            "Inconsistent snapshot: " + snapshot);
+                }
+            }
+            writer.join();
+
+            Vector<Integer> elements = new Vector<Integer>();
+            for (int i = 0; i < 100; i += 2) {
+                elements.addElement(i);
+            }
+
+            this.expectElements(elements);
+        }
+    }
+
+    class Test4 extends ThreadedTestCase<Integer> {
+        public Test4(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "One thread removes 100 numbers while another adds them back";
+        }
+
+        @Override
+        public void runThreaded() throws Exception {
+            /* every number is there at least once all the time, so however
+             the adds and removes interleave or cancel out, it ends up once */
+            for (int i = 0; i < 100; i++) {
+                sorted.add(i);
+            }
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread thr_a = new Thread(new TestRunnable() {
+                @Override
+                public void runThreaded() throws Exception {
+                    barrier.await();
+                    for (int i = 0; i < 100; i++) {
+                        sorted.remove(i);
+                    }
+                }
+            });
+
+            Thread thr_b = new Thread(new TestRunnable() {
+                @Override
+                public void runThreaded() throws Exception {
+                    barrier.await();
+                    for (int i = 0; i < 100; i++) {
+                        sorted.add(i);
+                    }
+                }
+            });
+
+            thr_a.start();
+            thr_b.start();
+            thr_a.join();
+            thr_b.join();
+
+            Vector<Integer> elements = new Vector<Integer>();
+            for (int i = 0; i < 100; i++) {
+                elements.addElement(i);
+            }
+
+            this.expectElements(elements);
+        }
+    }
+
+    class Test5 extends ThreadedTestCase<Integer> {
+        public Test5(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "Contains while another thread adds and removes";
+        }
+
+        @Override
+        public void runThreaded() throws Exception {
+            /* as in Test3, the even numbers stay all the time, while the nodes
+             around them come and go */
+            for (int i = 0; i < 100; i += 2) {
+                sorted.add(i);
+            }
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread writer = new Thread(new TestRunnable() {
+                @Override
+                public void runThreaded() throws Exception {
+                    barrier.await();
+                    for (int i = 1; i < 100; i += 2) {
+                        sorted.add(i);
+                        sorted.remove(i);
+                    }
+                }
+            });
+
+            writer.start();
+            barrier.await();
+            for (int n = 0; n < 5; n++) {
+                for (int i = 0; i < 100; i += 2) {
+                    if (!sorted.contains(i)) {
+                        throw new TestFailedException(i + " not found");
+                    }
+                }
+                if (sorted.contains(-1) || sorted.contains(100)) {
+                    throw new TestFailedException("Found an item never added");
+                }
+            }
+            writer.join();
+
+            for (int i = 1; i < 100; i += 2) {
+                if (sorted.contains(i)) {
+                    throw new TestFailedException(i + " found after removal");
+                }
+            }
+            Vector<Integer> elements = new Vector<Integer>();
+            for (int i = 0; i < 100; i += 2) {
+                elements.addElement(i);
+            }
+
+            this.expectElements(elements);
+        }
+    }
+
+    class Test6 extends TestCase<Integer> {
+        static final int ITEMS = 100000;
+        static final int WRITERS = 4;
+        static final long TIMEOUT_MS = 10000;
+
+        public Test6(String ds) {
+            super(ds);
+        };
+
+        @Override
+        public String description() {
+            return "Snapshots of " + ITEMS + " numbers while " + WRITERS
+                    + " threads keep adding and removing";
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.runThreaded();
+            } catch (TestFailedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void runThreaded() throws Exception {
+            /* as in Test3, but every writer keeps at most 1 odd number of its
+             own, and the writers do not stop before the snapshots are done */
+            Integer[] items = new Integer[ITEMS];
+            for (int i = 0; i < ITEMS; i++) {
+                items[i] = 2 * i;
+            }
+            sorted.bulkLoad(items);
+            final AtomicBoolean stop = new AtomicBoolean(false);
+            Thread[] writers = new Thread[WRITERS];
+            for (int w = 0; w < WRITERS; w++) {
+                final int first = 2 * w + 1;
+                writers[w] = new Thread(new TestRunnable() {
+                    @Override
+                    public void runThreaded() throws Exception {
+                        for (int i = first; !stop.get(); i = (i + 2 * WRITERS)
+                                % (2 * ITEMS)) {
+                            sorted.add(i);
+                            sorted.remove(i);
+                        }
+                    }
+                });
+                writers[w].start();
+            }
+
+            final Vector<ArrayList<Integer>> snapshots = new Vector<ArrayList<Integer>>();
+            Thread reader = new Thread(new TestRunnable() {
+                @Override
+                public void runThreaded() throws Exception {
+                    for (int n = 0; n < 3; n++) {
+                        snapshots.add(sorted.snapshot());
+                    }
+                }
+            });
+            reader.start();
+            reader.join(TIMEOUT_MS);
+            boolean done = !reader.isAlive();
+            stop.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            reader.join();
+            if (!done) {
+                throw new TestFailedException(
+                        "3 snapshots took longer than " + TIMEOUT_MS + " ms");
+            }
+
+            for (ArrayList<Integer> snapshot : snapshots) {
+                int odd = 0;
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (snapshot.get(i) % 2 != 0) {
+                        odd++;
+                    }
+                    if (i > 0 && snapshot.get(i - 1) > snapshot.get(i)) {
+                        throw new TestFailedException("Snapshot not sorted at "
+                                + snapshot.get(i));
+                    }
+                }
+                if (odd > WRITERS || snapshot.size() - odd != ITEMS) {
+                    throw new TestFailedException("Inconsistent snapshot: "
+                            + odd + " odd numbers, " + (snapshot.size() - odd)
+                            + " even ones");
+                }
+            }
+        }
+    }
 }
@@ -6,7 +6,9 @@ public class UnitTestRunner {
 
     public static void main(String[] args) throws InterruptedException {
         if (args.length < 1 || args.length > 1) {
-            System.out.printf("We need exactly 1 argument: choose between cgl, cgt, fgl, fgt\n");
+            System.out.printf("We need exactly 1 argument: choose between "
+                    + "cgl, cgt, fgl, fgt, ll, lt, lfl, lfsl, lft, avl, "
+                    + "ul, fccgl, fccgt, sfgt, efgl, ecgt, ill, ilt\n");
             System.exit(1);
         }
 
@@ -18,7 +20,10 @@ public class UnitTestRunner {
     public void runAll(String ds) {
         TestCase<?>[] sequential = SequentialTestsInteger.testCases(ds);
         TestCase<?>[] threaded = ThreadedTestsInteger.testCases(ds);
-        TestCase<?>[] sequentialStrings = SequentialTestsString.testCases(ds);
+        TestCase<?>[] sequentialStrings = ds.equals(TestCase.ILL)
+                || ds.equals(TestCase.ILT) || ds.equals(TestCase.SFGT)
+                        ? new TestCase<?>[0]
+                        : SequentialTestsString.testCases(ds);
         TestCase<?>[] all = concat(concat(sequential, sequentialStrings),
                 threaded);
 